@@ -7,9 +7,9 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import ch.epfl.rigel.Preconditions;
 
 /**
  * Chargeur de catalogue d'astérismes
@@ -38,12 +38,7 @@ public enum AsterismLoader implements StarCatalogue.Loader {
             throws IOException {
 
         BufferedReader br = new BufferedReader(
-                new InputStreamReader(inputStream, c));
-
-        Map<Integer, Star> map = new HashMap<>();
-        for (Star s : builder.stars()) {
-            map.put(s.hipparcosId(), s);
-        }
+                new InputStreamReader(CompressedStreams.open(inputStream), c));
 
         String str;
         while ((str = br.readLine()) != null) {
@@ -53,7 +48,9 @@ public enum AsterismLoader implements StarCatalogue.Loader {
             List<Star> list = new ArrayList<>();
 
             for (String t : tab) {
-                list.add(map.get(Integer.parseInt(t)));
+                int index = builder.starIndexOfHipparcos(Integer.parseInt(t));
+                Preconditions.checkArgument(index >= 0);
+                list.add(builder.stars().get(index));
             }
 
             builder.addAsterism(new Asterism(list));
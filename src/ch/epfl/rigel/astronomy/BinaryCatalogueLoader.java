@@ -0,0 +1,253 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+/**
+ * Chargeur de catalogue d'étoiles au format binaire compact produit par
+ * {@link BinaryCatalogueWriter}.
+ *
+ * Le fichier est constitué d'un en-tête (nombre magique, version, nombre
+ * d'étoiles) suivi d'un enregistrement par étoile : numéro Hipparcos (int),
+ * ascension droite et déclinaison en radians (double), magnitude et indice
+ * de couleur (float), puis le genre du nom (octet) suivi soit du nom propre,
+ * soit de la désignation de Bayer et de l'abréviation de la constellation ;
+ * chaque chaîne est écrite comme sa longueur sur un short non signé suivie
+ * de ses octets UTF-8. Les enregistrements sont rangés par magnitude
+ * croissante, si bien que les étoiles les plus brillantes sont lues en
+ * premier.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public enum BinaryCatalogueLoader implements StarCatalogue.Loader {
+    INSTANCE;
+
+    final static int MAGIC = 0x52474C53;
+    final static int VERSION = 4;
+
+    final static byte PROPER_NAME = 0;
+    final static byte BAYER_NAME = 1;
+
+    private final static Charset c = StandardCharsets.UTF_8;
+    private final static int BLOCK_BYTES = 1 << 16;
+
+    /**
+     * Ajoute au bâtisseur de catalogue toutes les étoiles obtenues du flot
+     * binaire donné, éventuellement compressé. Si le flot provient d'un
+     * fichier non compressé, celui-ci est projeté en mémoire plutôt que lu ;
+     * sinon, il est analysé au fur et à mesure de sa lecture.
+     *
+     * @param inputStream
+     *            flux d'entréé
+     * @param builder
+     *            bâtisseur
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si le flot n'est pas
+     *             un catalogue binaire valide.
+     */
+    @Override
+    public void load(InputStream inputStream, StarCatalogue.Builder builder)
+            throws IOException {
+        load(inputStream, builder, magnitude -> {
+        });
+    }
+
+    /**
+     * Ajoute au bâtisseur de catalogue toutes les étoiles obtenues du flot
+     * binaire donné, comme load, en signalant à l'auditeur donné la magnitude
+     * de chaque étoile avant de l'ajouter. Les magnitudes signalées sont donc
+     * croissantes, et lorsque l'auditeur reçoit une magnitude, le bâtisseur
+     * contient exactement les étoiles plus brillantes.
+     *
+     * @param inputStream
+     *            flux d'entréé
+     * @param builder
+     *            bâtisseur
+     * @param beforeStar
+     *            auditeur, appelé depuis le fil du chargement
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si le flot n'est pas
+     *             un catalogue binaire valide.
+     */
+    void load(InputStream inputStream, StarCatalogue.Builder builder,
+            DoubleConsumer beforeStar) throws IOException {
+
+        if (inputStream instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) inputStream).getChannel();
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    channel.position(), channel.size() - channel.position());
+            if (mapped.remaining() >= Integer.BYTES && mapped.getInt(0) == MAGIC) {
+                load(new RecordReader(null, mapped), builder, beforeStar);
+                return;
+            }
+        }
+        ReadableByteChannel channel = Channels.newChannel(
+                CompressedStreams.open(inputStream));
+        load(new RecordReader(channel, ByteBuffer.allocate(BLOCK_BYTES).flip()),
+                builder, beforeStar);
+    }
+
+    /**
+     * Ajoute au bâtisseur de catalogue toutes les étoiles du fichier binaire
+     * donné, en le projetant en mémoire s'il n'est pas compressé.
+     *
+     * @param path
+     *            chemin du fichier
+     * @param builder
+     *            bâtisseur
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas
+     *             un catalogue binaire valide.
+     */
+    public void load(Path path, StarCatalogue.Builder builder)
+            throws IOException {
+
+        try (FileInputStream inputStream = new FileInputStream(path.toFile())) {
+            load(inputStream, builder);
+        }
+    }
+
+    private void load(RecordReader reader, StarCatalogue.Builder builder,
+            DoubleConsumer beforeStar) throws IOException {
+
+        try {
+            if (reader.read(ByteBuffer::getInt) != MAGIC
+                    || reader.read(ByteBuffer::getInt) != VERSION)
+                throw new IOException();
+
+            int count = reader.read(ByteBuffer::getInt);
+            double previous = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; ++i) {
+                Star star = reader.read(BinaryCatalogueLoader::readStar);
+                if (star.magnitude() < previous)
+                    throw new IOException();
+                previous = star.magnitude();
+
+                beforeStar.accept(star.magnitude());
+                builder.addStar(star);
+            }
+
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Lecteur d'enregistrements, depuis un tampon rempli à la demande par
+     * blocs lus d'un canal, ou depuis un tampon contenant tout le catalogue
+     */
+    private static final class RecordReader {
+
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer;
+
+        /**
+         * @param channel
+         *            canal remplissant le tampon, ou null si le tampon
+         *            contient déjà tout le catalogue
+         * @param buffer
+         *            tampon, en mode lecture
+         */
+        private RecordReader(ReadableByteChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Lit un enregistrement au moyen de la fonction donnée, qui lève
+         * BufferUnderflowException si le tampon ne le contient pas en
+         * entier ; le tampon est alors complété et la lecture recommencée
+         *
+         * @throws IOException
+         *             en cas d'erreur d'entrée/sortie, ou si le catalogue se
+         *             termine au milieu de l'enregistrement
+         */
+        private <T> T read(Function<ByteBuffer, T> record) throws IOException {
+            while (true) {
+                buffer.mark();
+                try {
+                    return record.apply(buffer);
+                } catch (BufferUnderflowException e) {
+                    buffer.reset();
+                    if (!fill())
+                        throw new IOException(e);
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (channel == null)
+                return false;
+
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // enregistrement plus long que le tampon
+                ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+                buffer = larger.put(buffer.flip());
+            }
+            int read = channel.read(buffer);
+            buffer.flip();
+            return read >= 0;
+        }
+    }
+
+    /**
+     * Lit un enregistrement d'étoile à la position courante du tampon
+     *
+     * @param buffer
+     *            tampon
+     * @return l'étoile lue
+     * @throws BufferUnderflowException
+     *             si le tampon ne contient pas un enregistrement complet
+     * @throws IllegalArgumentException
+     *             si le genre du nom est inconnu
+     */
+    static Star readStar(ByteBuffer buffer) {
+        int hip = buffer.getInt();
+        double rarad = buffer.getDouble();
+        double decrad = buffer.getDouble();
+        float mag = buffer.getFloat();
+        float ci = buffer.getFloat();
+        EquatorialCoordinates pos = EquatorialCoordinates.of(rarad, decrad);
+
+        switch (buffer.get()) {
+            case PROPER_NAME:
+                return new Star(hip, readString(buffer), pos, mag, ci);
+            case BAYER_NAME:
+                return new Star(hip, readString(buffer), readString(buffer),
+                        pos, mag, ci);
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Lit une chaîne UTF-8 précédée de sa longueur en octets (short non
+     * signé) à la position courante du tampon
+     *
+     * @param buffer
+     *            tampon
+     * @return la chaîne lue
+     * @throws BufferUnderflowException
+     *             si le tampon ne contient pas la chaîne complète
+     */
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, c);
+    }
+}
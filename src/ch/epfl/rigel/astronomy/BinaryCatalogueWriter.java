@@ -0,0 +1,168 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Convertisseur produisant un catalogue binaire lisible par
+ * {@link BinaryCatalogueLoader}.
+ *
+ * La ressource hygdata_v3.bin, chargée en priorité par l'application, est
+ * produite à partir du catalogue CSV, depuis la racine du projet, par :
+ *
+ * <pre>
+ * java -cp &lt;classes&gt; ch.epfl.rigel.astronomy.BinaryCatalogueWriter \
+ *         resources/hygdata_v3.csv resources/hygdata_v3.bin
+ * </pre>
+ *
+ * Elle doit être régénérée à chaque modification du catalogue CSV : les
+ * instantanés du catalogue sont identifiés par l'empreinte de la ressource
+ * binaire, et non par celle du CSV. BinaryCatalogueLoaderTest échoue si les
+ * deux ressources ne contiennent plus les mêmes étoiles.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class BinaryCatalogueWriter {
+
+    private final static Charset c = StandardCharsets.UTF_8;
+
+    private BinaryCatalogueWriter() {
+    }
+
+    /**
+     * Écrit les étoiles données au format binaire sur le flot de sortie, par
+     * magnitude croissante ; les étoiles de même magnitude restent dans
+     * l'ordre donné
+     *
+     * @param stars
+     *            étoiles
+     * @param outputStream
+     *            flot de sortie
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException
+     *             si le nom d'une étoile dépasse 65535 octets
+     */
+    public static void write(List<Star> stars, OutputStream outputStream)
+            throws IOException {
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(outputStream));
+
+        out.writeInt(BinaryCatalogueLoader.MAGIC);
+        out.writeInt(BinaryCatalogueLoader.VERSION);
+        out.writeInt(stars.size());
+
+        List<Star> byMagnitude = new ArrayList<>(stars);
+        byMagnitude.sort(Comparator.comparingDouble(Star::magnitude));
+        for (Star star : byMagnitude)
+            writeStar(out, star);
+        out.flush();
+    }
+
+    /**
+     * Écrit l'enregistrement binaire de l'étoile donnée
+     *
+     * @param out
+     *            flot de sortie
+     * @param star
+     *            étoile
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException
+     *             si le nom de l'étoile dépasse 65535 octets
+     */
+    static void writeStar(DataOutputStream out, Star star)
+            throws IOException {
+        out.writeInt(star.hipparcosId());
+        out.writeDouble(star.equatorialPos().ra());
+        out.writeDouble(star.equatorialPos().dec());
+        out.writeFloat((float) star.magnitude());
+        out.writeFloat((float) star.colorIndex());
+
+        int nameCode = star.nameCode();
+        if (nameCode < 0) {
+            out.writeByte(BinaryCatalogueLoader.PROPER_NAME);
+            writeString(out, star.name());
+        } else {
+            out.writeByte(BinaryCatalogueLoader.BAYER_NAME);
+            writeString(out, StarNames.bayer(nameCode));
+            writeString(out, StarNames.constellation(nameCode));
+        }
+    }
+
+    /**
+     * Retourne la taille de l'enregistrement binaire de l'étoile donnée
+     *
+     * @param star
+     *            étoile
+     * @return la taille de l'enregistrement, en octets
+     */
+    static int recordBytes(Star star) {
+        int nameCode = star.nameCode();
+        int names = nameCode < 0
+                ? stringBytes(star.name())
+                : stringBytes(StarNames.bayer(nameCode))
+                        + stringBytes(StarNames.constellation(nameCode));
+        return Integer.BYTES + 2 * Double.BYTES + 2 * Float.BYTES + Byte.BYTES
+                + names;
+    }
+
+    private static int stringBytes(String str) {
+        return Short.BYTES + str.getBytes(c).length;
+    }
+
+    /**
+     * Écrit la chaîne donnée en UTF-8, précédée de sa longueur en octets
+     *
+     * @param out
+     *            flot de sortie
+     * @param str
+     *            chaîne
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException
+     *             si la chaîne dépasse 65535 octets
+     */
+    static void writeString(DataOutputStream out, String str)
+            throws IOException {
+        byte[] bytes = str.getBytes(c);
+        Preconditions.checkArgument(bytes.length <= 0xFFFF);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Convertit un catalogue HYG au format CSV en catalogue binaire, en
+     * l'analysant en parallèle
+     *
+     * @param args
+     *            le chemin du fichier CSV puis celui du fichier binaire à
+     *            produire
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try (InputStream hs = Files.newInputStream(Path.of(args[0]))) {
+            builder.loadFrom(hs, HygDatabaseLoader.PARALLEL);
+        }
+        try (OutputStream os = Files.newOutputStream(Path.of(args[1]))) {
+            write(builder.stars(), os);
+        }
+    }
+}
@@ -3,18 +3,25 @@ package ch.epfl.rigel.astronomy;
 import ch.epfl.rigel.Preconditions;
 import ch.epfl.rigel.coordinates.EquatorialCoordinates;
 
+import java.util.AbstractList;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Limite de Constellation
  *
+ * Les points sont stockés dans deux tableaux de doubles (ascension droite et
+ * déclinaison) ; la liste retournée par getPoints n'en est qu'une vue.
+ *
  * @author Nathan Chettrit (313002)
  * @author Yanis Seddik (310086)
  */
 public final class Boundaries {
 
     private final String name;
-    private final List<EquatorialCoordinates> points;
+    private final double[] ra;
+    private final double[] dec;
 
     /**
      * Constructeur
@@ -25,7 +32,13 @@ public final class Boundaries {
     public Boundaries(String name, List<EquatorialCoordinates> points) {
         Preconditions.checkArgument(!points.isEmpty());
         this.name = name;
-        this.points = List.copyOf(points);
+        this.ra = new double[points.size()];
+        this.dec = new double[points.size()];
+        for (int i = 0; i < ra.length; i++) {
+            EquatorialCoordinates point = points.get(i);
+            ra[i] = point.ra();
+            dec[i] = point.dec();
+        }
     }
 
     /**
@@ -34,7 +47,7 @@ public final class Boundaries {
      * @return la liste des points
      */
     public List<EquatorialCoordinates> getPoints() {
-        return points;
+        return new PointList();
     }
 
     /**
@@ -45,4 +58,45 @@ public final class Boundaries {
     public String getName() {
         return name;
     }
+
+    /**
+     * @return le nombre de points des limites
+     */
+    int pointCount() {
+        return ra.length;
+    }
+
+    /**
+     * @param index l'index du point
+     * @return l'ascension droite, en radians, du point d'index donné
+     */
+    double ra(int index) {
+        return ra[index];
+    }
+
+    /**
+     * @param index l'index du point
+     * @return la déclinaison, en radians, du point d'index donné
+     */
+    double dec(int index) {
+        return dec[index];
+    }
+
+    /**
+     * Vue non modifiable des points des limites
+     */
+    private final class PointList extends AbstractList<EquatorialCoordinates>
+            implements RandomAccess {
+
+        @Override
+        public EquatorialCoordinates get(int index) {
+            Objects.checkIndex(index, ra.length);
+            return EquatorialCoordinates.of(ra[index], dec[index]);
+        }
+
+        @Override
+        public int size() {
+            return ra.length;
+        }
+    }
 }
\ No newline at end of file
@@ -34,7 +34,8 @@ public enum BoundariesLoader implements StarCatalogue.Loader {
     public void load(InputStream inputStream, StarCatalogue.Builder builder)
             throws IOException {
 
-        BufferedReader bf = new BufferedReader(new InputStreamReader(inputStream, c));
+        BufferedReader bf = new BufferedReader(new InputStreamReader(
+                CompressedStreams.open(inputStream), c));
 
         String newName = "";
         String oldName = "";
@@ -0,0 +1,257 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.DoubleConsumer;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Étape de chargement concurrente d'un catalogue : les chargeurs
+ * indépendants s'exécutent en parallèle, et chaque chargeur ne démarre
+ * qu'une fois les futurs de ses dépendances terminés.
+ *
+ * Un chargeur dépendant charge dans le bâtisseur de ses dépendances, réunies
+ * au préalable s'il en a plusieurs, si bien qu'il y trouve leurs éléments
+ * sans qu'ils soient recopiés. Une fois tous les chargeurs terminés, les
+ * bâtisseurs restants sont réunis dans l'ordre de leur premier chargeur ; le
+ * catalogue obtenu est donc le même qu'avec un chargement séquentiel dans
+ * l'ordre d'ajout dès lors que les éléments d'un même type proviennent de
+ * chargeurs liés par des dépendances.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class CatalogueLoadingStage {
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private StarCatalogue.Storage storage = StarCatalogue.Storage.HEAP;
+
+    /**
+     * Source d'un flot d'entrée à charger
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * ouvre le flot d'entrée
+         *
+         * @return le flot d'entrée
+         * @throws IOException en cas d'erreur d'entrée/sortie
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Ajoute un chargeur à l'étape
+     *
+     * @param name         nom du chargeur, unique
+     * @param source       source du flot à charger
+     * @param loader       chargeur
+     * @param dependencies noms des chargeurs, déjà ajoutés, dont le résultat
+     *                     doit être présent dans le bâtisseur avant le
+     *                     chargement
+     * @return l'étape
+     * @throws IllegalArgumentException si le nom est déjà utilisé ou si l'une
+     *                                  des dépendances est inconnue
+     */
+    public CatalogueLoadingStage add(String name, Source source,
+                                     StarCatalogue.Loader loader, String... dependencies) {
+
+        Preconditions.checkArgument(!tasks.containsKey(name));
+
+        List<Task> direct = new ArrayList<>(dependencies.length);
+        for (String dependency : dependencies) {
+            Task task = tasks.get(dependency);
+            Preconditions.checkArgument(task != null);
+            direct.add(task);
+        }
+
+        tasks.put(name, new Task(tasks.size(), source, loader, direct));
+        return this;
+    }
+
+    /**
+     * Choisit le stockage du catalogue produit par l'étape, HEAP par défaut
+     *
+     * @param storage stockage des positions, magnitudes et indices de
+     *                couleur des étoiles
+     * @return l'étape
+     */
+    public CatalogueLoadingStage storage(StarCatalogue.Storage storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * Lance le chargement sur l'exécuteur donné
+     *
+     * @param executor exécuteur
+     * @return le futur catalogue, qui échoue avec une UncheckedIOException en
+     * cas d'erreur d'entrée/sortie
+     */
+    public CompletableFuture<StarCatalogue> run(Executor executor) {
+        return run(executor, progress -> {
+        });
+    }
+
+    /**
+     * Lance le chargement sur l'exécuteur donné, en signalant la progression
+     * à l'auditeur donné : après chaque chargeur terminé, il reçoit la
+     * fraction des chargeurs terminés, depuis le fil qui a exécuté ce
+     * chargeur. Les appels ne sont jamais simultanés et les fractions
+     * reçues sont croissantes, la dernière valant 1.
+     *
+     * @param executor exécuteur
+     * @param progress auditeur de progression
+     * @return le futur catalogue, qui échoue avec une UncheckedIOException en
+     * cas d'erreur d'entrée/sortie
+     */
+    public CompletableFuture<StarCatalogue> run(Executor executor,
+                                                DoubleConsumer progress) {
+        StarCatalogue.Storage storage = this.storage;
+        return load(executor, progress).thenApply(builder -> builder.build(storage));
+    }
+
+    /**
+     * Lance le chargement sur l'exécuteur donné, sans construire le
+     * catalogue, comme run
+     *
+     * @param executor exécuteur
+     * @param progress auditeur de progression
+     * @return le futur bâtisseur contenant tous les éléments chargés
+     */
+    CompletableFuture<StarCatalogue.Builder> load(Executor executor,
+                                                  DoubleConsumer progress) {
+        Progress done = new Progress(tasks.size(), progress);
+        Map<Task, Lineage> lineageOf = new IdentityHashMap<>();
+        List<Lineage> lineages = new ArrayList<>();
+
+        for (Task task : tasks.values()) {
+            // Lignées des dépendances, distinctes, dans l'ordre de leur
+            // premier chargeur
+            List<Lineage> dependencies = new ArrayList<>();
+            for (Task dependency : task.dependencies) {
+                Lineage lineage = lineageOf.get(dependency).root();
+                if (!dependencies.contains(lineage))
+                    dependencies.add(lineage);
+            }
+            dependencies.sort(Comparator.comparingInt(l -> l.first));
+
+            Lineage lineage;
+            if (dependencies.isEmpty()) {
+                lineage = new Lineage(task.index, CompletableFuture.supplyAsync(() ->
+                        done.report(task.load(new StarCatalogue.Builder())), executor));
+                lineages.add(lineage);
+            } else {
+                // Seules les lignées dont dépend le chargeur sont attendues,
+                // puis réunies dans la première
+                lineage = dependencies.get(0);
+                CompletableFuture<StarCatalogue.Builder> merged = lineage.builder;
+                for (Lineage other : dependencies.subList(1, dependencies.size())) {
+                    merged = merged.thenCombine(other.builder, StarCatalogue.Builder::addAll);
+                    other.mergedInto = lineage;
+                    lineages.remove(other);
+                }
+                lineage.builder = merged.thenApplyAsync(builder ->
+                        done.report(task.load(builder)), executor);
+            }
+            lineageOf.put(task, lineage);
+        }
+
+        List<CompletableFuture<StarCatalogue.Builder>> futures = new ArrayList<>();
+        for (Lineage lineage : lineages)
+            futures.add(lineage.builder);
+        return CompletableFuture
+                .allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    StarCatalogue.Builder builder = new StarCatalogue.Builder();
+                    for (CompletableFuture<StarCatalogue.Builder> future : futures)
+                        builder.addAll(future.join());
+                    return builder;
+                });
+    }
+
+    /**
+     * Lignée de chargeurs partageant un bâtisseur : un chargeur sans
+     * dépendance en ouvre une, un chargeur dépendant poursuit celle de ses
+     * dépendances, après avoir réuni leurs lignées s'il en a plusieurs. Les
+     * chargeurs d'une lignée s'exécutent donc l'un après l'autre, et chacun
+     * trouve dans le bâtisseur les éléments de ses dépendances sans qu'ils
+     * soient recopiés.
+     */
+    private static final class Lineage {
+
+        private final int first;
+        private CompletableFuture<StarCatalogue.Builder> builder;
+        private Lineage mergedInto;
+
+        private Lineage(int first, CompletableFuture<StarCatalogue.Builder> builder) {
+            this.first = first;
+            this.builder = builder;
+        }
+
+        private Lineage root() {
+            Lineage lineage = this;
+            while (lineage.mergedInto != null)
+                lineage = lineage.mergedInto;
+            return lineage;
+        }
+    }
+
+    /**
+     * Compte des chargeurs terminés, signalé à l'auditeur de progression
+     */
+    private static final class Progress {
+
+        private final int total;
+        private final DoubleConsumer listener;
+        private int done;
+
+        private Progress(int total, DoubleConsumer listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        private synchronized StarCatalogue.Builder report(StarCatalogue.Builder builder) {
+            listener.accept((double) ++done / total);
+            return builder;
+        }
+    }
+
+    /**
+     * Chargeur de l'étape, avec son rang d'ajout et ses dépendances directes
+     */
+    private static final class Task {
+
+        private final int index;
+        private final Source source;
+        private final StarCatalogue.Loader loader;
+        private final List<Task> dependencies;
+
+        private Task(int index, Source source, StarCatalogue.Loader loader,
+                     List<Task> dependencies) {
+            this.index = index;
+            this.source = source;
+            this.loader = loader;
+            this.dependencies = dependencies;
+        }
+
+        private StarCatalogue.Builder load(StarCatalogue.Builder builder) {
+            try (InputStream inputStream = source.open()) {
+                return builder.loadFrom(inputStream, loader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+/**
+ * Instantané binaire d'un catalogue entièrement construit (étoiles, index des
+ * astérismes et points des limites de constellations), identifié par une
+ * empreinte des ressources dont il a été tiré.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class CatalogueSnapshot {
+
+    private final static int MAGIC = 0x5247534E;
+    private final static int VERSION = 3;
+    private final static int BLOCK_BYTES = 1 << 16;
+
+    private CatalogueSnapshot() {
+    }
+
+    /**
+     * Calcule l'empreinte (SHA-256, en hexadécimal) des contenus de
+     * ressources donnés, dans l'ordre
+     *
+     * @param sources
+     *            contenus des ressources
+     * @return l'empreinte
+     */
+    public static String key(byte[]... sources) {
+        MessageDigest digest = newDigest();
+        for (byte[] source : sources) {
+            digest.update(source);
+            digest.update(lengthBytes(source.length));
+        }
+        return hex(digest);
+    }
+
+    /**
+     * Calcule l'empreinte des ressources lues depuis les sources données,
+     * dans l'ordre ; elle est égale à celle de leurs contenus. Les ressources
+     * ne sont pas copiées en mémoire : celles qui sont des fichiers sont
+     * projetées en mémoire, les autres lues par blocs.
+     *
+     * @param sources
+     *            sources des ressources
+     * @return l'empreinte
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    public static String key(CatalogueLoadingStage.Source... sources)
+            throws IOException {
+
+        MessageDigest digest = newDigest();
+        byte[] block = new byte[BLOCK_BYTES];
+        for (CatalogueLoadingStage.Source source : sources) {
+            long length = 0;
+            try (InputStream inputStream = source.open()) {
+                if (inputStream instanceof FileInputStream) {
+                    FileChannel channel = ((FileInputStream) inputStream).getChannel();
+                    length = channel.size() - channel.position();
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                            channel.position(), length));
+                } else {
+                    int read;
+                    while ((read = inputStream.read(block)) >= 0) {
+                        digest.update(block, 0, read);
+                        length += read;
+                    }
+                }
+            }
+            digest.update(lengthBytes(length));
+        }
+        return hex(digest);
+    }
+
+    // La longueur suit le contenu, pour que l'empreinte d'un flot puisse
+    // être calculée sans connaître sa longueur à l'avance
+    private static byte[] lengthBytes(long length) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(0, length).array();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest())
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * Écrit l'instantané du catalogue donné, associé à l'empreinte donnée,
+     * sur le flot de sortie
+     *
+     * @param catalogue
+     *            catalogue
+     * @param key
+     *            empreinte des ressources sources
+     * @param outputStream
+     *            flot de sortie
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    public static void write(StarCatalogue catalogue, String key,
+            OutputStream outputStream) throws IOException {
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(outputStream));
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        BinaryCatalogueWriter.writeString(out, key);
+
+        List<Star> stars = catalogue.stars();
+        out.writeInt(stars.size());
+        for (Star star : stars)
+            BinaryCatalogueWriter.writeStar(out, star);
+
+        out.writeInt(catalogue.asterisms().size());
+        for (Asterism asterism : catalogue.asterisms()) {
+            List<Integer> indices = catalogue.asterismIndices(asterism);
+            out.writeInt(indices.size());
+            for (int index : indices)
+                out.writeInt(index);
+        }
+
+        out.writeInt(catalogue.boundaries().size());
+        for (Boundaries boundaries : catalogue.boundaries()) {
+            BinaryCatalogueWriter.writeString(out, boundaries.getName());
+            out.writeInt(boundaries.pointCount());
+            for (int i = 0; i < boundaries.pointCount(); ++i) {
+                out.writeDouble(boundaries.ra(i));
+                out.writeDouble(boundaries.dec(i));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Écrit l'instantané du catalogue donné dans le fichier donné, en le
+     * remplaçant de manière atomique
+     *
+     * @param catalogue
+     *            catalogue
+     * @param key
+     *            empreinte des ressources sources
+     * @param file
+     *            fichier de l'instantané
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    public static void write(StarCatalogue catalogue, String key, Path file)
+            throws IOException {
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "snapshot", ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                write(catalogue, key, os);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Restaure le catalogue contenu dans le fichier d'instantané donné, en le
+     * projetant en mémoire
+     *
+     * @param file
+     *            fichier de l'instantané
+     * @param key
+     *            empreinte attendue des ressources sources
+     * @return le catalogue, ou Optional.empty() si le fichier n'existe pas ou
+     *         a été produit par une autre version ou d'autres ressources
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si le fichier est
+     *             corrompu
+     */
+    public static Optional<StarCatalogue> read(Path file, String key)
+            throws IOException {
+
+        if (!Files.isRegularFile(file))
+            return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()), key);
+        }
+    }
+
+    /**
+     * Restaure le catalogue contenu dans le tampon donné
+     *
+     * @param buffer
+     *            tampon contenant l'instantané
+     * @param key
+     *            empreinte attendue des ressources sources
+     * @return le catalogue, ou Optional.empty() si l'instantané a été produit
+     *         par une autre version ou d'autres ressources
+     * @throws IOException
+     *             si l'instantané est corrompu
+     */
+    public static Optional<StarCatalogue> read(ByteBuffer buffer, String key)
+            throws IOException {
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !BinaryCatalogueLoader.readString(buffer).equals(key))
+                return Optional.empty();
+
+            int starCount = buffer.getInt();
+            List<Star> stars = new ArrayList<>(starCount);
+            for (int i = 0; i < starCount; ++i)
+                stars.add(BinaryCatalogueLoader.readStar(buffer));
+
+            int asterismCount = buffer.getInt();
+            List<Asterism> asterisms = new ArrayList<>(asterismCount);
+            for (int i = 0; i < asterismCount; ++i) {
+                int size = buffer.getInt();
+                List<Star> members = new ArrayList<>(size);
+                for (int j = 0; j < size; ++j)
+                    members.add(stars.get(buffer.getInt()));
+                asterisms.add(new Asterism(members));
+            }
+
+            int boundariesCount = buffer.getInt();
+            List<Boundaries> boundaries = new ArrayList<>(boundariesCount);
+            for (int i = 0; i < boundariesCount; ++i) {
+                String name = BinaryCatalogueLoader.readString(buffer);
+                int size = buffer.getInt();
+                List<EquatorialCoordinates> points = new ArrayList<>(size);
+                for (int j = 0; j < size; ++j)
+                    points.add(EquatorialCoordinates.of(buffer.getDouble(),
+                            buffer.getDouble()));
+                boundaries.add(new Boundaries(name, points));
+            }
+
+            return Optional.of(new StarCatalogue(stars, asterisms, boundaries));
+
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -44,6 +44,29 @@ public abstract class CelestialObject {
         this.magnitude = magnitude;
     }
 
+    /**
+     * Construit un objet céleste dont le nom n'est pas stocké, mais fourni
+     * par une redéfinition de name()
+     *
+     * @param equatorialPos
+     *            coordonnées équatoriales
+     * @param angularSize
+     *            taille angulaire
+     * @param magnitude
+     *            magnitude
+     * @throws IllegalArgumentException
+     *             si la taille angulaire est négative
+     * @throws NullPointerException
+     *             si la position équatoriale est nulle
+     */
+    CelestialObject(EquatorialCoordinates equatorialPos, float angularSize,
+            float magnitude) {
+        checkArgument(angularSize >= 0);
+        this.equatorialPos = Objects.requireNonNull(equatorialPos);
+        this.angularSize = angularSize;
+        this.magnitude = magnitude;
+    }
+
     /**
      * @return le nom
      */
@@ -0,0 +1,186 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ouverture transparente des ressources compressées par les chargeurs de
+ * catalogue.
+ *
+ * Le format est reconnu à ses premiers octets : gzip (y compris les fichiers
+ * formés de plusieurs membres, comme ceux compressés par blocs) et zip, dont
+ * seule la première entrée est lue. Un flot compressé est décompressé par un
+ * fil démon, pris dans une réserve commune, qui remplit à l'avance une file
+ * de blocs pendant que le chargeur analyse les précédents ; un flot non
+ * compressé est simplement tamponné.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+final class CompressedStreams {
+
+    private final static int BLOCK_SIZE = 1 << 16;
+    private final static int QUEUED_BLOCKS = 8;
+
+    private final static int GZIP_MAGIC = 0x1F8B;
+    private final static int ZIP_MAGIC = 0x504B0304;
+
+    private final static ExecutorService DECOMPRESSORS =
+            Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "rigel-decompression");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private CompressedStreams() {
+    }
+
+    /**
+     * Retourne un flot lisant le contenu décompressé du flot donné, ou le flot
+     * donné tamponné s'il n'est pas compressé. Le flot retourné ferme le flot
+     * donné lorsqu'il est lui-même fermé.
+     *
+     * @param inputStream
+     *            flot d'entrée, éventuellement compressé
+     * @return le flot décompressé
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    static InputStream open(InputStream inputStream) throws IOException {
+
+        BufferedInputStream in = new BufferedInputStream(inputStream, BLOCK_SIZE);
+        in.mark(Integer.BYTES);
+        int header = 0;
+        for (int i = 0; i < Integer.BYTES; ++i)
+            header = header << 8 | (in.read() & 0xFF);
+        in.reset();
+
+        if (header >>> 16 == GZIP_MAGIC)
+            return new Prefetcher(new GZIPInputStream(in, BLOCK_SIZE));
+
+        if (header == ZIP_MAGIC) {
+            ZipInputStream zip = new ZipInputStream(in);
+            if (zip.getNextEntry() == null)
+                throw new IOException();
+            return new Prefetcher(zip);
+        }
+        return in;
+    }
+
+    /**
+     * Flot lisant par blocs, depuis un fil de la réserve, le flot source.
+     * La fin de la file est toujours signalée, même si la lecture échoue ou
+     * est interrompue.
+     */
+    private static final class Prefetcher extends InputStream {
+
+        private final static byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> blocks =
+                new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+        private final InputStream source;
+
+        private volatile boolean closed;
+        private volatile Exception failure;
+
+        private byte[] block = new byte[0];
+        private int position;
+
+        private Prefetcher(InputStream source) {
+            this.source = source;
+            DECOMPRESSORS.execute(this::fill);
+        }
+
+        private void fill() {
+            try (source) {
+                byte[] buffer = new byte[BLOCK_SIZE];
+                int n;
+                while ((n = source.readNBytes(buffer, 0, BLOCK_SIZE)) > 0) {
+                    if (!offer(Arrays.copyOf(buffer, n)))
+                        return;
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                if (!offer(END) && !closed) {
+                    // Remplissage interrompu : les blocs en attente sont
+                    // abandonnés pour que le lecteur reçoive la fin et l'échec
+                    if (failure == null)
+                        failure = new InterruptedIOException();
+                    blocks.clear();
+                    blocks.offer(END);
+                }
+            }
+        }
+
+        /**
+         * Ajoute le bloc à la file, et retourne faux si le flot a été fermé
+         * entre-temps
+         */
+        private boolean offer(byte[] b) {
+            try {
+                while (!blocks.offer(b, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed)
+                        return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Retourne vrai si un bloc non vide est disponible, en l'attendant
+         * au besoin
+         */
+        private boolean nextBlock() throws IOException {
+            while (block != END && position == block.length) {
+                try {
+                    block = blocks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                position = 0;
+            }
+            if (block == END && failure != null)
+                throw new IOException(failure);
+            return block != END;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextBlock() ? block[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextBlock())
+                return -1;
+
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            blocks.clear();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.Arrays;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Table associant un numéro Hipparcos à l'index d'une étoile, à adressage
+ * ouvert et sans objets intermédiaires.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+final class HipparcosIndex {
+
+    private final static int EMPTY = -1;
+    private final static int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Construit une table vide pouvant contenir le nombre d'entrées donné
+     * sans être agrandie
+     *
+     * @param expectedSize
+     *            nombre d'entrées attendues
+     */
+    HipparcosIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Construit la table des numéros Hipparcos donnés, chacun étant associé à
+     * son index dans le tableau
+     *
+     * @param hipparcosIds
+     *            numéros Hipparcos
+     * @return la table
+     */
+    static HipparcosIndex of(int[] hipparcosIds) {
+        HipparcosIndex index = new HipparcosIndex(hipparcosIds.length);
+        for (int i = 0; i < hipparcosIds.length; ++i)
+            index.put(hipparcosIds[i], i);
+        return index;
+    }
+
+    /**
+     * Associe l'index donné au numéro Hipparcos donné, en remplaçant
+     * l'éventuelle association précédente
+     *
+     * @param hipparcosId
+     *            numéro Hipparcos
+     * @param index
+     *            index de l'étoile
+     * @throws IllegalArgumentException
+     *             si le numéro Hipparcos est négatif
+     */
+    void put(int hipparcosId, int index) {
+        Preconditions.checkArgument(hipparcosId >= 0);
+
+        int slot = slot(hipparcosId);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = hipparcosId;
+            ++size;
+        }
+        values[slot] = index;
+
+        if (2 * size > keys.length)
+            grow();
+    }
+
+    /**
+     * Retourne l'index associé au numéro Hipparcos donné
+     *
+     * @param hipparcosId
+     *            numéro Hipparcos
+     * @return l'index associé, ou -1 si le numéro est inconnu
+     */
+    int get(int hipparcosId) {
+        if (hipparcosId < 0)
+            return -1;
+        int slot = slot(hipparcosId);
+        return keys[slot] == EMPTY ? -1 : values[slot];
+    }
+
+    /**
+     * @return le nombre de numéros Hipparcos distincts de la table
+     */
+    int size() {
+        return size;
+    }
+
+    private int slot(int hipparcosId) {
+        int mask = keys.length - 1;
+        int hash = hipparcosId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != hipparcosId)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -6,6 +6,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 import ch.epfl.rigel.coordinates.EquatorialCoordinates;
 
@@ -16,10 +21,34 @@ import ch.epfl.rigel.coordinates.EquatorialCoordinates;
  * @author Yanis Seddik (310086)
  */
 public enum HygDatabaseLoader implements StarCatalogue.Loader {
-    INSTANCE;
+    INSTANCE,
+
+    /**
+     * Chargeur découpant le catalogue en blocs alignés sur les fins de ligne
+     * et les analysant en parallèle ; les étoiles sont ajoutées au bâtisseur
+     * dans l'ordre du fichier.
+     */
+    PARALLEL {
+        @Override
+        public void load(InputStream inputStream, StarCatalogue.Builder builder)
+                throws IOException {
+            loadParallel(inputStream, builder);
+        }
+    };
 
     private final static Charset c = StandardCharsets.US_ASCII;
 
+    private final static int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final static int HIP = 1;
+    private final static int PROPER = 6;
+    private final static int MAG = 13;
+    private final static int CI = 16;
+    private final static int RARAD = 23;
+    private final static int DECRAD = 24;
+    private final static int BAYER = 27;
+    private final static int CON = 29;
+
     /**
      * Ajoute au bâtisseur de catalogue toutes les étoiles obtenues du catalogue
      * HYG
@@ -34,9 +63,25 @@ public enum HygDatabaseLoader implements StarCatalogue.Loader {
     @Override
     public void load(InputStream inputStream, StarCatalogue.Builder builder)
             throws IOException {
+        forEachStar(inputStream, builder::addStar);
+    }
+
+    /**
+     * Transmet à l'action donnée chaque étoile du catalogue HYG, dans l'ordre
+     * du fichier, au fur et à mesure de sa lecture et sans les conserver
+     *
+     * @param inputStream
+     *            flux d'entréé
+     * @param action
+     *            action
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie.
+     */
+    static void forEachStar(InputStream inputStream, Consumer<Star> action)
+            throws IOException {
 
         BufferedReader bf = new BufferedReader(
-                new InputStreamReader(inputStream, c));
+                new InputStreamReader(CompressedStreams.open(inputStream), c));
 
         bf.readLine();
 
@@ -45,22 +90,43 @@ public enum HygDatabaseLoader implements StarCatalogue.Loader {
 
             String tab[] = str.split(",");
 
-            int hip = Integer.parseInt(check(tab[1], "0"));
-            String bayer = check(tab[27], "?");
-            String con = tab[29];
-            String name = check(tab[6], bayer + " " + con);
-            double mag = Double.parseDouble(check(tab[13], "0"));
-            double ci = Double.parseDouble(check(tab[16], "0"));
-            double rarad = Double.parseDouble(tab[23]);
-            double decrad = Double.parseDouble(tab[24]);
-
-            builder.addStar(
-                    new Star(hip, name, EquatorialCoordinates.of(rarad, decrad),
-                            (float) mag, (float) ci));
+            int hip = Integer.parseInt(check(tab[HIP], "0"));
+            double mag = Double.parseDouble(check(tab[MAG], "0"));
+            double ci = Double.parseDouble(check(tab[CI], "0"));
+            double rarad = Double.parseDouble(tab[RARAD]);
+            double decrad = Double.parseDouble(tab[DECRAD]);
+            EquatorialCoordinates pos = EquatorialCoordinates.of(rarad, decrad);
+
+            action.accept(tab[PROPER].isEmpty()
+                    ? new Star(hip, check(tab[BAYER], "?"), tab[CON], pos,
+                            (float) mag, (float) ci)
+                    : new Star(hip, tab[PROPER], pos, (float) mag, (float) ci));
         }
-        
+
         bf.close();
-        
+
+    }
+
+    private static void loadParallel(InputStream inputStream,
+            StarCatalogue.Builder builder) throws IOException {
+
+        byte[] bytes = CompressedStreams.open(inputStream).readAllBytes();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, bytes.length
+                / (4 * ForkJoinPool.getCommonPoolParallelism()));
+
+        List<ForkJoinTask<List<Star>>> tasks = new ArrayList<>();
+        int from = nextLine(bytes, 0);
+        while (from < bytes.length) {
+            int to = nextLine(bytes, Math.min(bytes.length, from + chunkSize));
+            int chunkFrom = from;
+            tasks.add(ForkJoinTask.adapt(() -> parseChunk(bytes, chunkFrom, to)).fork());
+            from = to;
+        }
+
+        for (ForkJoinTask<List<Star>> task : tasks) {
+            for (Star star : task.join())
+                builder.addStar(star);
+        }
     }
 
     /**
@@ -73,7 +139,117 @@ public enum HygDatabaseLoader implements StarCatalogue.Loader {
      *            valeur par défault
      * @return la valeur donné
      */
-    private String check(String tru, String defult) {
+    private static String check(String tru, String defult) {
         return tru.isEmpty() ? defult : tru;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retourne l'index du début de la ligne suivant la position donnée, ou la
+     * taille du tableau s'il n'y en a pas
+     */
+    private static int nextLine(byte[] bytes, int from) {
+        int i = from;
+        while (i < bytes.length && bytes[i] != '\n')
+            ++i;
+        return Math.min(bytes.length, i + 1);
+    }
+
+    /**
+     * Analyse les lignes complètes comprises entre les index from (inclus)
+     * et to (exclus), sans découper les colonnes inutilisées
+     */
+    private static List<Star> parseChunk(byte[] bytes, int from, int to) {
+
+        List<Star> stars = new ArrayList<>();
+        int[] starts = new int[CON + 1];
+        int[] ends = new int[CON + 1];
+
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && bytes[lineEnd] != '\n')
+                ++lineEnd;
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+                --lineEnd;
+
+            if (lineEnd > lineStart) {
+                int column = 0;
+                starts[0] = lineStart;
+                for (int i = lineStart; i < lineEnd && column < CON; ++i) {
+                    if (bytes[i] == ',') {
+                        ends[column] = i;
+                        starts[++column] = i + 1;
+                    }
+                }
+                ends[column] = lineEnd;
+                for (int i = starts[CON]; i < lineEnd; ++i) {
+                    if (bytes[i] == ',') {
+                        ends[CON] = i;
+                        break;
+                    }
+                }
+                for (int k = column + 1; k <= CON; ++k)
+                    starts[k] = ends[k] = lineEnd;
+
+                stars.add(parseStar(bytes, starts, ends,
+                        parseHip(bytes, starts, ends),
+                        parseDouble(bytes, starts, ends, MAG)));
+            }
+            lineStart = next;
+        }
+        return stars;
+    }
+
+    /**
+     * Retourne le numéro Hipparcos de la ligne, ou 0 si la colonne est vide
+     *
+     * @throws NumberFormatException
+     *             si la colonne n'est pas un entier positif, comme le ferait
+     *             Integer.parseInt
+     */
+    private static int parseHip(byte[] bytes, int[] starts, int[] ends) {
+        // Au-delà de neuf chiffres, le numéro pourrait dépasser la capacité
+        // d'un int, ce que Integer.parseInt sait détecter
+        if (ends[HIP] - starts[HIP] > 9)
+            return Integer.parseInt(field(bytes, starts, ends, HIP));
+
+        int hip = 0;
+        for (int i = starts[HIP]; i < ends[HIP]; ++i) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("For input string: \""
+                        + field(bytes, starts, ends, HIP) + "\"");
+            hip = 10 * hip + digit;
+        }
+        return hip;
+    }
+
+    private static Star parseStar(byte[] bytes, int[] starts, int[] ends,
+            int hip, double mag) {
+
+        double ci = parseDouble(bytes, starts, ends, CI);
+        double rarad = Double.parseDouble(field(bytes, starts, ends, RARAD));
+        double decrad = Double.parseDouble(field(bytes, starts, ends, DECRAD));
+        EquatorialCoordinates pos = EquatorialCoordinates.of(rarad, decrad);
+
+        return ends[PROPER] > starts[PROPER]
+                ? new Star(hip, field(bytes, starts, ends, PROPER), pos,
+                        (float) mag, (float) ci)
+                : new Star(hip, check(field(bytes, starts, ends, BAYER), "?"),
+                        field(bytes, starts, ends, CON), pos, (float) mag,
+                        (float) ci);
+    }
+
+    private static String field(byte[] bytes, int[] starts, int[] ends,
+            int column) {
+        return new String(bytes, starts[column], ends[column] - starts[column], c);
+    }
+
+    private static double parseDouble(byte[] bytes, int[] starts, int[] ends,
+            int column) {
+        return ends[column] > starts[column]
+                ? Double.parseDouble(field(bytes, starts, ends, column))
+                : 0;
+    }
+}
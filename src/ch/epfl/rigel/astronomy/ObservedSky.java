@@ -1,42 +1,96 @@
 package ch.epfl.rigel.astronomy;
 
+import ch.epfl.rigel.Preconditions;
 import ch.epfl.rigel.coordinates.*;
 
+import java.nio.IntBuffer;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-
-import static java.lang.Math.pow;
-import static java.lang.Math.sqrt;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Représente un ensemble d'objets célestes projetés dans le plan par une
  * projection stéréographique à un instant et un endroit d'observation donnés.
  *
+ * Chacune de ses composantes — positions des corps du système solaire et
+ * leurs projections, projections des étoiles, traces du Soleil et de la Lune,
+ * projections des limites des constellations — n'est calculée qu'au premier
+ * accès, puis conservée jusqu'au prochain changement d'instant. Un ciel
+ * observé ne doit donc être utilisé que par un seul fil à la fois.
+ *
  * @author Nathan Chettrit (313002)
  * @author Yanis Seddik (310086)
  */
 public final class ObservedSky {
 
-    private final Sun sun;
-    private final Moon moon;
+    /**
+     * Mode de projection des étoiles
+     */
+    public enum StarProjection {
+        /**
+         * Projection de toutes les étoiles par le fil appelant
+         */
+        SERIAL,
+
+        /**
+         * Projection découpant les étoiles en blocs projetés en parallèle sur
+         * le pool fork/join commun, chaque bloc écrivant des positions
+         * distinctes du tableau des projections ; en dessous d'un certain
+         * nombre d'étoiles, la projection est faite par le fil appelant.
+         */
+        PARALLEL
+    }
+
+    private Sun sun;
+    private Moon moon;
     private final List<Planet> lisPlanet;
     private final List<Star> lisStar;
 
     private final StarCatalogue starCatalogue;
+    private final double limitingMagnitude;
+    private final StarProjection starProjection;
+    private final int visibleStarCount;
+
+    private final GeographicCoordinates where;
+    private ZonedDateTime when;
+    // Instant auquel les positions des corps du système solaire ont été
+    // calculées, nul tant qu'elles ne l'ont pas été
+    private ZonedDateTime bodiesWhen;
 
     EquatorialToHorizontalConversion equToHor;
     StereographicProjection proj;
+    private EquatorialProjector projector;
 
-    private final CartesianCoordinates projSun;
-    private final CartesianCoordinates projMoon;
+    private CartesianCoordinates projSun;
+    private CartesianCoordinates projMoon;
     private CartesianCoordinates[] projTraceSun;
     private CartesianCoordinates[] projTraceMoon;
     private final double[] projPlanets;
-    private final double[] projStars;
+    // Tableaux alloués au premier accès, puis réutilisés
+    private double[] projStars;
+    private double[] projBoundaries;
+
+    // Composantes à jour pour l'instant courant
+    private boolean bodiesProjected;
+    private boolean starsProjected;
+    private boolean boundariesProjected;
+    // Traces à jour pour les positions courantes des corps
+    private boolean tracesComputed;
+
+    // Écart de temps, en secondes, en deçà duquel advanceTo conserve les
+    // positions équatoriales des corps du système solaire ; la Lune, le plus
+    // rapide d'entre eux, se déplace de moins de 40" par minute parmi les
+    // étoiles
+    private final static long BODY_TOLERANCE_SECONDS = 60;
+
+    private final static int MIN_PARALLEL_STARS = 1 << 14;
+    private final static int MIN_CHUNK_STARS = 1 << 12;
 
     private final static int INTERVAL_MINUTE = 2;
     private final static int MIUTES_IN_A_DAY = 1440;
@@ -55,32 +109,143 @@ public final class ObservedSky {
      */
     public ObservedSky(ZonedDateTime when, GeographicCoordinates where,
                        StereographicProjection proj, StarCatalogue catalogue) {
+        this(when, where, proj, catalogue, Double.POSITIVE_INFINITY);
+    }
 
-        this.proj = proj;
+    /**
+     * représente un ensemble d'objets célestes projetés dans le plan par une
+     * projection stéréographique à un instant et un endroit d'observation
+     * donnés, dont seules les étoiles de magnitude inférieure ou égale à la
+     * magnitude limite donnée sont projetées.
+     *
+     * @param when              l'instant d'observation (donné par un couple
+     *                          date/heure « zoné »)
+     * @param where             la position d'observation (donnée par ses
+     *                          coordonnées géographiques)
+     * @param proj              la projection stéréographique à utiliser
+     * @param catalogue         le catalogue contenant les étoiles et les
+     *                          astérismes
+     * @param limitingMagnitude la magnitude limite des étoiles projetées
+     */
+    public ObservedSky(ZonedDateTime when, GeographicCoordinates where,
+                       StereographicProjection proj, StarCatalogue catalogue,
+                       double limitingMagnitude) {
+        this(when, where, proj, catalogue, limitingMagnitude,
+                StarProjection.SERIAL);
+    }
 
-        // Soleil
-        this.sun = SunModel.SUN.at(Epoch.J2010.daysUntil(when),
-                new EclipticToEquatorialConversion(when));
-        // Lune
-        this.moon = MoonModel.MOON.at(Epoch.J2010.daysUntil(when),
-                new EclipticToEquatorialConversion(when));
+    /**
+     * représente un ensemble d'objets célestes projetés dans le plan par une
+     * projection stéréographique à un instant et un endroit d'observation
+     * donnés, dont seules les étoiles de magnitude inférieure ou égale à la
+     * magnitude limite donnée sont projetées, selon le mode donné.
+     *
+     * @param when              l'instant d'observation (donné par un couple
+     *                          date/heure « zoné »)
+     * @param where             la position d'observation (donnée par ses
+     *                          coordonnées géographiques)
+     * @param proj              la projection stéréographique à utiliser
+     * @param catalogue         le catalogue contenant les étoiles et les
+     *                          astérismes
+     * @param limitingMagnitude la magnitude limite des étoiles projetées
+     * @param starProjection    le mode de projection des étoiles
+     */
+    public ObservedSky(ZonedDateTime when, GeographicCoordinates where,
+                       StereographicProjection proj, StarCatalogue catalogue,
+                       double limitingMagnitude, StarProjection starProjection) {
 
-        // Liste des planètes
-        lisPlanet = new ArrayList<>();
-        for (PlanetModel pl : PlanetModel.ALL) {
-            if (pl != PlanetModel.EARTH) {
-                this.lisPlanet.add(pl.at(Epoch.J2010.daysUntil(when),
-                        new EclipticToEquatorialConversion(when)));
-            }
-        }
+        this.where = where;
+        this.proj = proj;
+        this.limitingMagnitude = limitingMagnitude;
+        this.starProjection = starProjection;
 
         // Liste des étoiles
         this.starCatalogue = catalogue;
         this.lisStar = catalogue.stars();
 
+        this.lisPlanet = new ArrayList<>();
+        this.projPlanets = new double[14];
+        this.visibleStarCount = catalogue.brighterThanCount(limitingMagnitude);
+
+        projTraceSun = new CartesianCoordinates[(MIUTES_IN_A_DAY / INTERVAL_MINUTE)];
+        projTraceMoon = new CartesianCoordinates[(MIUTES_IN_A_DAY / INTERVAL_MINUTE)];
+
+        update(when);
+    }
+
+    /**
+     * Amène le ciel observé à l'instant donné, sans changer le lieu
+     * d'observation, la projection ni le catalogue.
+     *
+     * Les tableaux des positions sont réutilisés, et seule la rotation du
+     * repère équatorial vers le plan de projection est recalculée pour les
+     * étoiles. Les positions équatoriales du Soleil, de la Lune et des
+     * planètes, ainsi que les traces du Soleil et de la Lune, ne sont
+     * recalculées que si l'instant donné s'écarte de plus d'une minute de
+     * celui de leur dernier calcul ; le Soleil, la Lune et les planètes sont
+     * toutefois toujours reprojetés.
+     *
+     * @param when le nouvel instant d'observation
+     */
+    public void advanceTo(ZonedDateTime when) {
+        if (bodiesWhen != null && Math.abs(Duration.between(bodiesWhen, when)
+                .toSeconds()) > BODY_TOLERANCE_SECONDS)
+            bodiesWhen = null;
+        update(when);
+    }
+
+    /**
+     * Change l'instant d'observation et invalide les projections, recalculées
+     * au prochain accès
+     */
+    private void update(ZonedDateTime when) {
+        this.when = when;
+
         // Les projections
         equToHor = new EquatorialToHorizontalConversion(
                 when, where);
+        this.projector = new EquatorialProjector(equToHor, proj);
+
+        bodiesProjected = false;
+        starsProjected = false;
+        boundariesProjected = false;
+    }
+
+    /**
+     * Calcule les positions du Soleil, de la Lune et des planètes à l'instant
+     * courant, si elles ne sont pas connues
+     */
+    private void ensureBodies() {
+        if (bodiesWhen != null)
+            return;
+
+        EclipticToEquatorialConversion eclToEqu =
+                new EclipticToEquatorialConversion(when);
+        double days = Epoch.J2010.daysUntil(when);
+
+        // Soleil
+        this.sun = SunModel.SUN.at(days, eclToEqu);
+        // Lune
+        this.moon = MoonModel.MOON.at(days, eclToEqu);
+
+        // Liste des planètes
+        lisPlanet.clear();
+        for (PlanetModel pl : PlanetModel.ALL) {
+            if (pl != PlanetModel.EARTH)
+                this.lisPlanet.add(pl.at(days, eclToEqu));
+        }
+
+        bodiesWhen = when;
+        tracesComputed = false;
+    }
+
+    /**
+     * Projette le Soleil, la Lune et les planètes, si ce n'est pas déjà fait
+     */
+    private void ensureBodiesProjected() {
+        if (bodiesProjected)
+            return;
+        ensureBodies();
 
         // Projection du Soleil
         HorizontalCoordinates sunHorCoord = equToHor.apply(sun.equatorialPos());
@@ -92,8 +257,6 @@ public final class ObservedSky {
         this.projMoon = proj.apply(moonHorCoord);
 
         // Projection des planètes
-        this.projPlanets = new double[14];
-
         for (int i = 0; i < projPlanets.length; i += 2) {
             HorizontalCoordinates planetHorCoord = equToHor
                     .apply(lisPlanet.get(i / 2).equatorialPos());
@@ -102,25 +265,46 @@ public final class ObservedSky {
             this.projPlanets[i + 1] = planetCarCoord.y();
         }
 
-        // Projection des étoiles
-        this.projStars = new double[lisStar.size() * 2];
+        bodiesProjected = true;
+    }
 
-        for (int i = 0; i < projStars.length; i += 2) {
-            HorizontalCoordinates starHorCoord = equToHor
-                    .apply(lisStar.get(i / 2).equatorialPos());
-            CartesianCoordinates starCarCoord = proj.apply(starHorCoord);
-            this.projStars[i] = starCarCoord.x();
-            this.projStars[i + 1] = starCarCoord.y();
+    /**
+     * Projette les étoiles plus brillantes que la magnitude limite, si ce
+     * n'est pas déjà fait ; les autres restent sans position
+     */
+    private void ensureStarsProjected() {
+        if (starsProjected)
+            return;
+
+        if (projStars == null) {
+            projStars = new double[starCatalogue.starCount() * 2];
+            if (visibleStarCount < starCatalogue.starCount())
+                Arrays.fill(projStars, Double.NaN);
         }
 
-        // Projection des traces du Soleil et de la Lune
-        projTraceSun = new CartesianCoordinates[(MIUTES_IN_A_DAY / INTERVAL_MINUTE)];
-        projTraceMoon = new CartesianCoordinates[(MIUTES_IN_A_DAY / INTERVAL_MINUTE)];
+        double[] vectors = starCatalogue.starUnitVectors();
+        if (starProjection == StarProjection.PARALLEL
+                && visibleStarCount >= MIN_PARALLEL_STARS)
+            projectStarsInParallel(vectors, visibleStarCount);
+        else
+            projectStars(vectors, 0, visibleStarCount);
+
+        starsProjected = true;
+    }
+
+    /**
+     * Calcule les traces du Soleil et de la Lune sur les vingt-quatre heures
+     * suivant le calcul de leurs positions, si ce n'est pas déjà fait
+     */
+    private void ensureTraces() {
+        ensureBodies();
+        if (tracesComputed)
+            return;
 
         for (int i = 1; i < MIUTES_IN_A_DAY + 1; i += INTERVAL_MINUTE) {
 
             EquatorialToHorizontalConversion equToHorDay = new EquatorialToHorizontalConversion(
-                    when.plusMinutes(i), where);
+                    bodiesWhen.plusMinutes(i), where);
 
             HorizontalCoordinates sunTraceHorCoord = equToHorDay.apply(sun.equatorialPos());
             projTraceSun[i / INTERVAL_MINUTE] = proj.apply(sunTraceHorCoord);
@@ -128,6 +312,89 @@ public final class ObservedSky {
             HorizontalCoordinates moonTraceHorCoord = equToHorDay.apply(moon.equatorialPos());
             projTraceMoon[i / INTERVAL_MINUTE] = proj.apply(moonTraceHorCoord);
         }
+
+        tracesComputed = true;
+    }
+
+    /**
+     * Projette les points des limites des constellations, si ce n'est pas
+     * déjà fait
+     */
+    private void ensureBoundariesProjected() {
+        if (boundariesProjected)
+            return;
+
+        int count = starCatalogue.boundaryPointCount();
+        if (projBoundaries == null)
+            projBoundaries = new double[2 * count];
+        for (int p = 0; p < count; p++) {
+            projector.project(starCatalogue.boundaryRa(p),
+                    starCatalogue.boundaryDec(p), projBoundaries, 2 * p);
+        }
+
+        boundariesProjected = true;
+    }
+
+    /**
+     * Projette les étoiles de rang — par magnitude croissante — compris entre
+     * from (inclus) et to (exclu), de vecteurs unitaires donnés
+     */
+    private void projectStars(double[] vectors, int from, int to) {
+        for (int r = from; r < to; r++) {
+            int s = starCatalogue.starIndexByMagnitude(r);
+            projector.projectUnit(vectors[3 * s], vectors[3 * s + 1],
+                    vectors[3 * s + 2], projStars, 2 * s);
+        }
+    }
+
+    /**
+     * Projette les count étoiles les plus brillantes par blocs, tous projetés
+     * sur le pool fork/join commun sauf le dernier, projeté par le fil appelant
+     */
+    private void projectStarsInParallel(double[] vectors, int count) {
+        int chunkSize = Math.max(MIN_CHUNK_STARS,
+                count / (4 * ForkJoinPool.getCommonPoolParallelism()));
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int from = 0;
+        while (count - from > chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = from + chunkSize;
+            tasks.add(ForkJoinTask.adapt(() -> projectStars(vectors, chunkFrom, chunkTo))
+                    .fork());
+            from = chunkTo;
+        }
+        projectStars(vectors, from, count);
+
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+    }
+
+    /**
+     * retourne l'instant d'observation
+     *
+     * @return l'instant d'observation
+     */
+    public ZonedDateTime when() {
+        return when;
+    }
+
+    /**
+     * retourne la position d'observation
+     *
+     * @return la position d'observation
+     */
+    public GeographicCoordinates where() {
+        return where;
+    }
+
+    /**
+     * retourne la projection stéréographique utilisée
+     *
+     * @return la projection stéréographique utilisée
+     */
+    public StereographicProjection projection() {
+        return proj;
     }
 
     /**
@@ -136,6 +403,7 @@ public final class ObservedSky {
      * @return le Soleil sous la forme d'une instance de Sun
      */
     public Sun sun() {
+        ensureBodies();
         return sun;
     }
 
@@ -147,6 +415,7 @@ public final class ObservedSky {
      * de CartesianCoordinates
      */
     public CartesianCoordinates sunPosition() {
+        ensureBodiesProjected();
         return projSun;
     }
 
@@ -158,6 +427,7 @@ public final class ObservedSky {
      * de CartesianCoordinates
      */
     public CartesianCoordinates[] sunTracePosition() {
+        ensureTraces();
         return projTraceSun;
     }
 
@@ -167,6 +437,7 @@ public final class ObservedSky {
      * @return la Lune sous la forme d'une instance de Moon
      */
     public Moon moon() {
+        ensureBodies();
         return moon;
     }
 
@@ -178,6 +449,7 @@ public final class ObservedSky {
      * de CartesianCoordinates
      */
     public CartesianCoordinates moonPosition() {
+        ensureBodiesProjected();
         return projMoon;
     }
 
@@ -189,6 +461,7 @@ public final class ObservedSky {
      * de CartesianCoordinates
      */
     public CartesianCoordinates[] moonTracePosition() {
+        ensureTraces();
         return projTraceMoon;
     }
 
@@ -198,6 +471,7 @@ public final class ObservedSky {
      * @return la liste des sept planètes extraterrestres du système solaire
      */
     public List<Planet> planets() {
+        ensureBodies();
         return List.copyOf(lisPlanet);
     }
 
@@ -209,6 +483,7 @@ public final class ObservedSky {
      * dans un tableau de double.
      */
     public double[] planetPosition() {
+        ensureBodiesProjected();
         return projPlanets;
     }
 
@@ -221,14 +496,45 @@ public final class ObservedSky {
         return lisStar;
     }
 
+    /**
+     * retourne le catalogue dont sont issues les étoiles
+     *
+     * @return le catalogue dont sont issues les étoiles
+     */
+    public StarCatalogue catalogue() {
+        return starCatalogue;
+    }
+
+    /**
+     * retourne la magnitude limite des étoiles projetées
+     *
+     * @return la magnitude limite des étoiles projetées
+     */
+    public double limitingMagnitude() {
+        return limitingMagnitude;
+    }
+
+    /**
+     * retourne les index — dans le catalogue — des étoiles projetées, c.-à-d.
+     * plus brillantes que la magnitude limite, de la plus brillante à la moins
+     * brillante
+     *
+     * @return la vue en lecture seule des index des étoiles projetées
+     */
+    public IntBuffer visibleStars() {
+        return starCatalogue.starsBrighterThan(limitingMagnitude);
+    }
+
     /**
      * retourne les coordonnées cartésiennes des étoiles dans un tableau de
-     * double.
+     * double, indexé comme le catalogue ; les coordonnées des étoiles moins
+     * brillantes que la magnitude limite valent NaN.
      *
      * @return les coordonnées cartésiennes des étoiles dans un tableau de
      * double.
      */
     public double[] starPosition() {
+        ensureStarsProjected();
         return projStars;
     }
 
@@ -287,6 +593,23 @@ public final class ObservedSky {
         return boundariePositions;
     }
 
+    /**
+     * Projette dans le plan tous les points des limites des constellations
+     * du catalogue, et range leurs coordonnées x et y, dans l'ordre des
+     * points du catalogue, dans le tableau donné
+     *
+     * @param output le tableau de sortie, d'au moins deux fois
+     *               boundaryPointCount() éléments, réutilisable d'une image à l'autre
+     * @throws IllegalArgumentException si le tableau est trop petit
+     */
+    public void boundaryPositions(double[] output) {
+        int count = starCatalogue.boundaryPointCount();
+        Preconditions.checkArgument(output.length >= 2 * count);
+
+        ensureBoundariesProjected();
+        System.arraycopy(projBoundaries, 0, output, 0, 2 * count);
+    }
+
     /**
      * Etant donné les coordonnées d'un point du plan et une distance maximale,
      * retourne l'objet céleste le plus proche de ce point, pour peu qu'il se
@@ -303,64 +626,56 @@ public final class ObservedSky {
         double x1 = coord.x();
         double y1 = coord.y();
 
-        // Création d'une liste contenant tous les CelestialObject
-        List<CelestialObject> allCelestial = new ArrayList<>();
-
-        allCelestial.add(sun);
-        allCelestial.add(moon);
-        allCelestial.addAll(lisPlanet);
-        allCelestial.addAll(lisStar);
+        ensureBodiesProjected();
+        ensureStarsProjected();
 
-        // // Création d'un tableau contenant les projections
-        double[] all = new double[4 + projPlanets.length + projStars.length];
-        all[0] = projSun.x();
-        all[1] = projSun.y();
-        all[2] = projMoon.x();
-        all[3] = projMoon.y();
+        // Parcours des positions projetées, sans construire d'objet céleste :
+        // seule l'étoile la plus proche est construite, à la fin
+        double min = distMax * distMax;
+        CelestialObject closestBody = null;
+        int closestStar = -1;
 
-        for (int i = 4; i < projPlanets.length + 4; i++) {
-            all[i] = projPlanets[i - 4];
+        double distance = squaredDistance(projSun.x(), projSun.y(), x1, y1);
+        if (distance < min) {
+            min = distance;
+            closestBody = sun;
         }
-
-        for (int i = projPlanets.length + 4; i < projStars.length
-                + projPlanets.length + 4; i++) {
-            all[i] = projStars[i - (projPlanets.length + 4)];
+        distance = squaredDistance(projMoon.x(), projMoon.y(), x1, y1);
+        if (distance < min) {
+            min = distance;
+            closestBody = moon;
         }
-
-        // Calcul de l'index de l'objet céleste le plus proche
-        double min = Double.MAX_VALUE;
-        Optional<Integer> index = Optional.empty();
-        for (int i = 0; i < all.length; i += 2) {
-            double value = sqrt(pow(all[i] - x1, 2) + pow(all[i + 1] - y1, 2));
-            if ((value < distMax) && (value < min)) {
-                min = value;
-                index = Optional.of(i);
+        for (int i = 0; i < projPlanets.length; i += 2) {
+            distance = squaredDistance(projPlanets[i], projPlanets[i + 1], x1, y1);
+            if (distance < min) {
+                min = distance;
+                closestBody = lisPlanet.get(i / 2);
+            }
+        }
+        // Seules les étoiles plus brillantes que la magnitude limite ont une
+        // position : ce sont les premières dans l'ordre des magnitudes, mais
+        // leurs positions sont rangées selon leur index dans le catalogue
+        for (int r = 0; r < visibleStarCount; r++) {
+            int s = starCatalogue.starIndexByMagnitude(r);
+            distance = squaredDistance(projStars[2 * s], projStars[2 * s + 1], x1, y1);
+            if (distance < min) {
+                min = distance;
+                closestStar = s;
             }
         }
-
-       /* String nameOfCloserOne = allCelestial.get(index.get() / 2).name();
-         String result =FindType(nameOfCloserOne);
-
-         switch(result){
-             case "P" :
-               Planet planet = (Planet) allCelestial.get(index.get() / 2);
-               planet.khra();
-               break;
-
-             case "S" :
-                 Star star = (Star) allCelestial.get(index.get() / 2);
-                 int id = star.hipparcosId();
-                 System.out.println("the id of "+ star.name() + " is:" + id);
-                 break;
-         }*/
 
         // Return l'objet céleste le plus proche dans un Optional
-        return index.isPresent()
-                ? Optional.of(allCelestial.get(index.get() / 2))
-                : Optional.empty();
+        return closestStar >= 0
+                ? Optional.of(lisStar.get(closestStar))
+                : Optional.ofNullable(closestBody);
+    }
+
+    private static double squaredDistance(double x, double y, double x1, double y1) {
+        return (x - x1) * (x - x1) + (y - y1) * (y - y1);
     }
 
     private String FindType(String name) {
+        ensureBodies();
 
         for (Planet planet : lisPlanet) {
 
@@ -0,0 +1,174 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Chargeur progressif d'un catalogue binaire produit par
+ * {@link BinaryCatalogueWriter} : le catalogue est publié par paliers de
+ * magnitude croissante, puis une dernière fois complet.
+ *
+ * Les étoiles du catalogue binaire étant rangées par magnitude croissante,
+ * un palier est publié dès que l'analyse atteint la première étoile plus
+ * faible que sa magnitude limite, sans attendre la fin de l'analyse. Un
+ * palier ne contient donc que les étoiles plus brillantes que sa magnitude
+ * limite : les astérismes et les limites des constellations, chargés en
+ * parallèle, n'apparaissent que dans le catalogue complet. Les étoiles de
+ * chaque palier sont ordonnées spatialement.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class ProgressiveCatalogueLoader {
+
+    private final CatalogueLoadingStage.Source boundaries;
+    private final CatalogueLoadingStage.Source stars;
+    private final CatalogueLoadingStage.Source asterisms;
+    private final StarCatalogue.Storage storage;
+
+    /**
+     * Construit un chargeur progressif
+     *
+     * @param boundaries source des limites des constellations
+     * @param stars      source du catalogue binaire
+     * @param asterisms  source des astérismes
+     */
+    public ProgressiveCatalogueLoader(CatalogueLoadingStage.Source boundaries,
+                                      CatalogueLoadingStage.Source stars,
+                                      CatalogueLoadingStage.Source asterisms) {
+        this(boundaries, stars, asterisms, StarCatalogue.Storage.HEAP);
+    }
+
+    /**
+     * Construit un chargeur progressif dont les catalogues sont stockés selon
+     * le stockage donné
+     *
+     * @param boundaries source des limites des constellations
+     * @param stars      source du catalogue binaire
+     * @param asterisms  source des astérismes
+     * @param storage    stockage des positions, magnitudes et indices de
+     *                   couleur des étoiles
+     */
+    public ProgressiveCatalogueLoader(CatalogueLoadingStage.Source boundaries,
+                                      CatalogueLoadingStage.Source stars,
+                                      CatalogueLoadingStage.Source asterisms,
+                                      StarCatalogue.Storage storage) {
+        this.boundaries = boundaries;
+        this.stars = stars;
+        this.asterisms = asterisms;
+        this.storage = storage;
+    }
+
+    /**
+     * Lance le chargement sur l'exécuteur donné. Les sources ne sont lues et
+     * analysées qu'une fois ; chaque palier est construit pendant que
+     * l'analyse se poursuit, puis publié à l'auditeur, dans l'ordre, depuis
+     * le fil qui l'a construit.
+     *
+     * @param executor   exécuteur
+     * @param listener   auditeur recevant chaque palier
+     * @param magnitudes magnitudes limites des paliers intermédiaires, dans
+     *                   l'ordre croissant
+     * @return le futur catalogue complet, qui échoue avec une
+     * UncheckedIOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si les magnitudes ne sont pas
+     *                                  strictement croissantes
+     */
+    public CompletableFuture<StarCatalogue> load(Executor executor,
+                                                 Consumer<StarCatalogue> listener,
+                                                 double... magnitudes) {
+        return load(executor, listener, progress -> {
+        }, magnitudes);
+    }
+
+    /**
+     * Lance le chargement sur l'exécuteur donné, comme load, en signalant la
+     * progression de la lecture des sources à l'auditeur donné, comme
+     * {@link CatalogueLoadingStage#run(Executor, DoubleConsumer)}
+     *
+     * @param executor   exécuteur
+     * @param listener   auditeur recevant chaque palier
+     * @param progress   auditeur de progression
+     * @param magnitudes magnitudes limites des paliers intermédiaires, dans
+     *                   l'ordre croissant
+     * @return le futur catalogue complet, qui échoue avec une
+     * UncheckedIOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si les magnitudes ne sont pas
+     *                                  strictement croissantes
+     */
+    public CompletableFuture<StarCatalogue> load(Executor executor,
+                                                 Consumer<StarCatalogue> listener,
+                                                 DoubleConsumer progress,
+                                                 double... magnitudes) {
+
+        for (int i = 1; i < magnitudes.length; ++i)
+            Preconditions.checkArgument(magnitudes[i - 1] < magnitudes[i]);
+
+        Tiers tiers = new Tiers(magnitudes.clone(), listener, storage, executor);
+        StarCatalogue.Loader starLoader = (inputStream, builder) -> {
+            BinaryCatalogueLoader.INSTANCE.load(inputStream, builder,
+                    magnitude -> tiers.reach(magnitude, builder));
+            // paliers plus faibles que toutes les étoiles
+            tiers.reach(Double.POSITIVE_INFINITY, builder);
+        };
+
+        return new CatalogueLoadingStage()
+                .add("boundaries", boundaries, BoundariesLoader.INSTANCE)
+                .add("stars", stars, starLoader)
+                .add("asterisms", asterisms, AsterismLoader.INSTANCE, "stars")
+                .storage(storage)
+                .run(executor, progress)
+                .thenApplyAsync(StarCatalogue::spatiallyOrdered, executor)
+                .thenCompose(catalogue -> tiers.published.thenApply(v -> {
+                    listener.accept(catalogue);
+                    return catalogue;
+                }));
+    }
+
+    /**
+     * Paliers d'un chargement, atteints par le fil qui analyse les étoiles
+     * et construits puis publiés l'un après l'autre sur l'exécuteur
+     */
+    private static final class Tiers {
+
+        private final double[] magnitudes;
+        private final Consumer<StarCatalogue> listener;
+        private final StarCatalogue.Storage storage;
+        private final Executor executor;
+
+        private int next;
+        private CompletableFuture<Void> published =
+                CompletableFuture.completedFuture(null);
+
+        private Tiers(double[] magnitudes, Consumer<StarCatalogue> listener,
+                      StarCatalogue.Storage storage, Executor executor) {
+            this.magnitudes = magnitudes;
+            this.listener = listener;
+            this.storage = storage;
+            this.executor = executor;
+        }
+
+        /**
+         * Publie les paliers dont la magnitude limite est inférieure à la
+         * magnitude donnée, celle de la prochaine étoile analysée, à partir
+         * des étoiles déjà contenues dans le bâtisseur
+         */
+        private void reach(double magnitude, StarCatalogue.Builder builder) {
+            while (next < magnitudes.length && magnitude > magnitudes[next]) {
+                List<Star> stars = List.copyOf(builder.stars());
+                published = published.thenRunAsync(() -> {
+                    StarCatalogue.Builder tier = new StarCatalogue.Builder();
+                    for (Star star : stars)
+                        tier.addStar(star);
+                    listener.accept(tier.build(storage).spatiallyOrdered());
+                }, executor);
+                ++next;
+            }
+        }
+    }
+}
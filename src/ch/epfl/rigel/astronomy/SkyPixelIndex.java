@@ -0,0 +1,627 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+/**
+ * Index spatial des étoiles d'un catalogue, fondé sur la pixelisation
+ * HEALPix (schéma « nested ») de la sphère céleste.
+ *
+ * La sphère est découpée en 12 pixels de même aire, chacun d'eux étant
+ * récursivement découpé en 4 pixels de même aire ; au niveau k, il y a donc
+ * 12·4^k pixels, et les enfants du pixel p sont les pixels 4p à 4p + 3 du
+ * niveau k + 1. Les étoiles sont triées par pixel du niveau le plus fin de
+ * l'index, si bien que les étoiles d'un pixel de n'importe quel niveau
+ * occupent une plage contiguë de l'index.
+ *
+ * Les recherches descendent la hiérarchie depuis les 12 pixels de base :
+ * un pixel entièrement compris dans la zone cherchée est retenu en bloc, un
+ * pixel qui en est entièrement disjoint est écarté, et seuls les pixels
+ * partiellement couverts du niveau le plus fin voient leurs étoiles testées
+ * une à une.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class SkyPixelIndex {
+
+    /**
+     * Niveau le plus fin de l'index, tel que les numéros de pixels tiennent
+     * dans un int
+     */
+    public final static int MAX_ORDER = 13;
+
+    private final static int BASE_PIXELS = 12;
+    private final static int STARS_PER_PIXEL = 8;
+
+    private final static int[] JRLL = {2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4};
+    private final static int[] JPLL = {1, 3, 5, 7, 0, 2, 4, 6, 1, 3, 5, 7};
+
+    private final static double HALF_PI = Math.PI / 2;
+
+    private static final int OUTSIDE = 0;
+    private static final int PARTIAL = 1;
+    private static final int INSIDE = 2;
+
+    private final int order;
+    private final double[] maxPixelRadius;
+
+    // Étoiles triées par pixel : la i-ème étoile de l'index est l'étoile
+    // d'index stars[i] du catalogue, de pixel pixels[i] et de vecteur unité
+    // (x[i], y[i], z[i])
+    private final int[] stars;
+    private final int[] pixels;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    private SkyPixelIndex(int order, int[] stars, int[] pixels, double[] x,
+                          double[] y, double[] z) {
+        this.order = order;
+        this.stars = stars;
+        this.pixels = pixels;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+
+        this.maxPixelRadius = new double[order + 1];
+        for (int k = 0; k <= order; ++k)
+            maxPixelRadius[k] = maxPixelRadius(k);
+    }
+
+    /**
+     * Construit l'index des étoiles du catalogue donné, à un niveau choisi
+     * pour qu'un pixel du niveau le plus fin contienne en moyenne quelques
+     * étoiles
+     *
+     * @param catalogue le catalogue
+     * @return l'index
+     */
+    public static SkyPixelIndex of(StarCatalogue catalogue) {
+        int order = 0;
+        while (order < MAX_ORDER
+                && pixelCount(order) * STARS_PER_PIXEL < catalogue.starCount())
+            ++order;
+        return of(catalogue, order);
+    }
+
+    /**
+     * Construit l'index des étoiles du catalogue donné, au niveau donné
+     *
+     * @param catalogue le catalogue
+     * @param order     le niveau le plus fin de l'index
+     * @return l'index
+     * @throws IllegalArgumentException si le niveau n'est pas compris entre 0
+     *                                  et MAX_ORDER
+     */
+    public static SkyPixelIndex of(StarCatalogue catalogue, int order) {
+        Preconditions.checkArgument(0 <= order && order <= MAX_ORDER);
+
+        int count = catalogue.starCount();
+        long[] keys = new long[count];
+        for (int i = 0; i < count; ++i)
+            keys[i] = (long) pixelOf(order, catalogue.starRa(i), catalogue.starDec(i)) << 32 | i;
+        Arrays.sort(keys);
+
+        int[] stars = new int[count];
+        int[] pixels = new int[count];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        for (int i = 0; i < count; ++i) {
+            int star = (int) keys[i];
+            double ra = catalogue.starRa(star);
+            double cosDec = Math.cos(catalogue.starDec(star));
+            stars[i] = star;
+            pixels[i] = (int) (keys[i] >>> 32);
+            x[i] = cosDec * Math.cos(ra);
+            y[i] = cosDec * Math.sin(ra);
+            z[i] = Math.sin(catalogue.starDec(star));
+        }
+        return new SkyPixelIndex(order, stars, pixels, x, y, z);
+    }
+
+    /**
+     * @return le niveau le plus fin de l'index
+     */
+    public int order() {
+        return order;
+    }
+
+    /**
+     * Retourne le nombre de pixels du niveau donné
+     *
+     * @param order le niveau, entre 0 et MAX_ORDER
+     * @return le nombre de pixels, 12·4^order
+     */
+    public static int pixelCount(int order) {
+        return BASE_PIXELS << 2 * order;
+    }
+
+    /**
+     * Retourne le numéro, dans le schéma « nested », du pixel du niveau donné
+     * contenant la position donnée
+     *
+     * @param order le niveau, entre 0 et MAX_ORDER
+     * @param ra    l'ascension droite, en radians
+     * @param dec   la déclinaison, en radians
+     * @return le numéro du pixel
+     * @throws IllegalArgumentException si le niveau n'est pas compris entre 0
+     *                                  et MAX_ORDER
+     */
+    public static int pixelOf(int order, double ra, double dec) {
+        Preconditions.checkArgument(0 <= order && order <= MAX_ORDER);
+
+        int nside = 1 << order;
+        double z = Math.sin(dec);
+        double za = Math.abs(z);
+        double tt = ra / HALF_PI % 4;
+        if (tt < 0)
+            tt += 4;
+
+        int face;
+        int ix;
+        int iy;
+        if (za <= 2d / 3) {
+            double temp1 = nside * (0.5 + tt);
+            double temp2 = nside * (z * 0.75);
+            int jp = (int) (temp1 - temp2);
+            int jm = (int) (temp1 + temp2);
+            int ifp = jp >> order;
+            int ifm = jm >> order;
+            face = ifp == ifm ? (ifp | 4) : (ifp < ifm ? ifp : ifm + 8);
+            ix = jm & (nside - 1);
+            iy = nside - (jp & (nside - 1)) - 1;
+        } else {
+            int ntt = Math.min(3, (int) tt);
+            double tp = tt - ntt;
+            double tmp = nside * Math.sqrt(3 * (1 - za));
+            int jp = Math.min(nside - 1, (int) (tp * tmp));
+            int jm = Math.min(nside - 1, (int) ((1 - tp) * tmp));
+            if (z >= 0) {
+                face = ntt;
+                ix = nside - jm - 1;
+                iy = nside - jp - 1;
+            } else {
+                face = ntt + 8;
+                ix = jp;
+                iy = jm;
+            }
+        }
+        return (face << 2 * order) | spread(ix) | spread(iy) << 1;
+    }
+
+    /**
+     * Retourne les index, dans le catalogue et par ordre croissant, des
+     * étoiles situées à une distance angulaire inférieure ou égale au rayon
+     * donné de la position donnée
+     *
+     * @param ra     l'ascension droite du centre, en radians
+     * @param dec    la déclinaison du centre, en radians
+     * @param radius le rayon angulaire, en radians
+     * @return les index des étoiles
+     */
+    public int[] cone(double ra, double dec, double radius) {
+        IntCollector collector = new IntCollector();
+        forEachInCone(ra, dec, radius, collector);
+        return collector.sorted();
+    }
+
+    /**
+     * Applique l'action donnée à l'index, dans le catalogue, de chacune des
+     * étoiles situées à une distance angulaire inférieure ou égale au rayon
+     * donné de la position donnée, dans l'ordre de l'index
+     *
+     * @param ra     l'ascension droite du centre, en radians
+     * @param dec    la déclinaison du centre, en radians
+     * @param radius le rayon angulaire, en radians
+     * @param action l'action
+     */
+    public void forEachInCone(double ra, double dec, double radius,
+                              IntConsumer action) {
+        Cone cone = new Cone(ra, dec, radius);
+        search(cone, order, (from, to) -> {
+            for (int i = from; i < to; ++i)
+                action.accept(stars[i]);
+        }, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                if (cone.contains(x[i], y[i], z[i]))
+                    action.accept(stars[i]);
+            }
+        });
+    }
+
+    /**
+     * Retourne les index, dans le catalogue et par ordre croissant, des
+     * étoiles situées à l'intérieur du polygone sphérique convexe donné
+     *
+     * @param vertices les sommets du polygone, dans l'un ou l'autre sens de
+     *                 parcours
+     * @return les index des étoiles
+     * @throws IllegalArgumentException si le polygone a moins de trois sommets
+     */
+    public int[] polygon(List<EquatorialCoordinates> vertices) {
+        Polygon polygon = new Polygon(vertices);
+        IntCollector collector = new IntCollector();
+        search(polygon, order, (from, to) -> {
+            for (int i = from; i < to; ++i)
+                collector.accept(stars[i]);
+        }, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                if (polygon.contains(x[i], y[i], z[i]))
+                    collector.accept(stars[i]);
+            }
+        });
+        return collector.sorted();
+    }
+
+    /**
+     * Retourne, par ordre croissant, les numéros des pixels du niveau donné
+     * qui intersectent — ou sont susceptibles d'intersecter, la recherche
+     * étant conservatrice — le cône donné, typiquement le champ de vue
+     * courant
+     *
+     * @param order  le niveau des pixels, entre 0 et MAX_ORDER
+     * @param ra     l'ascension droite du centre, en radians
+     * @param dec    la déclinaison du centre, en radians
+     * @param radius le rayon angulaire, en radians
+     * @return les numéros des pixels
+     * @throws IllegalArgumentException si le niveau n'est pas compris entre 0
+     *                                  et MAX_ORDER
+     */
+    public static int[] pixelsInCone(int order, double ra, double dec,
+                                     double radius) {
+        Preconditions.checkArgument(0 <= order && order <= MAX_ORDER);
+
+        IntCollector collector = new IntCollector();
+        Cone cone = new Cone(ra, dec, radius);
+        double[] radii = new double[order + 1];
+        for (int k = 0; k <= order; ++k)
+            radii[k] = maxPixelRadius(k);
+
+        descend(cone, order, radii, (k, pixel, region) -> {
+            int shift = 2 * (order - k);
+            for (int p = pixel << shift; p < (pixel + 1) << shift; ++p)
+                collector.accept(p);
+        });
+        return collector.sorted();
+    }
+
+    /**
+     * Retourne les numéros des pixels du niveau donné qui intersectent le
+     * cône donné, comme pixelsInCone, mais triés par distance angulaire
+     * croissante entre leur centre et celui du cône
+     *
+     * @param order  le niveau des pixels, entre 0 et MAX_ORDER
+     * @param ra     l'ascension droite du centre, en radians
+     * @param dec    la déclinaison du centre, en radians
+     * @param radius le rayon angulaire, en radians
+     * @return les numéros des pixels, du plus proche au plus éloigné
+     * @throws IllegalArgumentException si le niveau n'est pas compris entre 0
+     *                                  et MAX_ORDER
+     */
+    public static int[] pixelsInConeByDistance(int order, double ra,
+                                               double dec, double radius) {
+        int[] pixels = pixelsInCone(order, ra, dec, radius);
+
+        // Le cosinus de la distance est le produit scalaire des vecteurs
+        // unité des centres : le plus grand est le plus proche
+        double[] axis = unitVector(ra, dec);
+        double[] center = new double[3];
+        double[] cosines = new double[pixels.length];
+        Integer[] ranks = new Integer[pixels.length];
+        for (int i = 0; i < pixels.length; ++i) {
+            pixelCenter(order, pixels[i], center);
+            cosines[i] = axis[0] * center[0] + axis[1] * center[1]
+                    + axis[2] * center[2];
+            ranks[i] = i;
+        }
+        Arrays.sort(ranks, (a, b) -> Double.compare(cosines[b], cosines[a]));
+
+        int[] sorted = new int[pixels.length];
+        for (int i = 0; i < pixels.length; ++i)
+            sorted[i] = pixels[ranks[i]];
+        return sorted;
+    }
+
+    /**
+     * Parcourt la hiérarchie des pixels et transmet les plages d'étoiles des
+     * pixels entièrement contenus dans la région, puis celles des pixels du
+     * niveau le plus fin qui ne le sont que partiellement
+     */
+    private void search(Region region, int order, RangeAction inside,
+                        RangeAction partial) {
+        descend(region, order, maxPixelRadius, (k, pixel, classification) -> {
+            int shift = 2 * (this.order - k);
+            int from = lowerBound(pixel << shift);
+            int to = lowerBound((pixel + 1) << shift);
+            if (classification == INSIDE)
+                inside.accept(from, to);
+            else
+                partial.accept(from, to);
+        });
+    }
+
+    /**
+     * Descend la hiérarchie jusqu'au niveau donné, en transmettant à l'action
+     * chaque pixel entièrement contenu dans la région (au plus haut niveau
+     * possible), ainsi que chaque pixel du niveau donné partiellement couvert
+     */
+    private static void descend(Region region, int order, double[] radii,
+                                PixelAction action) {
+        int[] stack = new int[4 * order + BASE_PIXELS];
+        int[] levels = new int[stack.length];
+        int size = 0;
+        for (int p = BASE_PIXELS - 1; p >= 0; --p) {
+            stack[size] = p;
+            levels[size++] = 0;
+        }
+
+        double[] center = new double[3];
+        while (size > 0) {
+            int pixel = stack[--size];
+            int k = levels[size];
+
+            pixelCenter(k, pixel, center);
+            int classification = region.classify(center, radii[k]);
+            if (classification == OUTSIDE)
+                continue;
+
+            if (classification == INSIDE || k == order) {
+                action.accept(k, pixel, classification);
+            } else {
+                for (int c = 3; c >= 0; --c) {
+                    stack[size] = 4 * pixel + c;
+                    levels[size++] = k + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne l'index de la première étoile de l'index dont le pixel est
+     * supérieur ou égal au pixel donné
+     */
+    private int lowerBound(int pixel) {
+        int low = 0;
+        int high = pixels.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pixels[mid] < pixel)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Range dans le tableau donné le vecteur unité du centre du pixel donné
+     */
+    private static void pixelCenter(int order, int pixel, double[] center) {
+        int nside = 1 << order;
+        int face = pixel >>> 2 * order;
+        int inFace = pixel & ((1 << 2 * order) - 1);
+        int ix = compress(inFace);
+        int iy = compress(inFace >>> 1);
+
+        int jr = (JRLL[face] << order) - ix - iy - 1;
+        double fact2 = 4d / pixelCount(order);
+
+        int nr;
+        double z;
+        int kshift;
+        if (jr < nside) {
+            nr = jr;
+            z = 1 - nr * (double) nr * fact2;
+            kshift = 0;
+        } else if (jr > 3 * nside) {
+            nr = 4 * nside - jr;
+            z = nr * (double) nr * fact2 - 1;
+            kshift = 0;
+        } else {
+            nr = nside;
+            z = (2 * nside - jr) * (2 * nside * fact2);
+            kshift = (jr - nside) & 1;
+        }
+
+        int jp = (JPLL[face] * nr + ix - iy + 1 + kshift) / 2;
+        if (jp > 4 * nside)
+            jp -= 4 * nside;
+        if (jp < 1)
+            jp += 4 * nside;
+
+        double phi = (jp - (kshift + 1) * 0.5) * (HALF_PI / nr);
+        double sinTheta = Math.sqrt(Math.max(0, (1 - z) * (1 + z)));
+        center[0] = sinTheta * Math.cos(phi);
+        center[1] = sinTheta * Math.sin(phi);
+        center[2] = z;
+    }
+
+    /**
+     * Retourne la distance angulaire maximale entre le centre d'un pixel du
+     * niveau donné et l'un de ses points
+     */
+    private static double maxPixelRadius(int order) {
+        int nside = 1 << order;
+        double t1 = 1 - 1d / nside;
+        t1 *= t1;
+        double za = 2d / 3;
+        double zb = 1 - t1 / 3;
+        double phia = Math.PI / (4 * nside);
+        double sa = Math.sqrt((1 - za) * (1 + za));
+        double sb = Math.sqrt((1 - zb) * (1 + zb));
+        double dot = sa * Math.cos(phia) * sb + za * zb;
+        return Math.acos(Math.min(1, dot));
+    }
+
+    /**
+     * Intercale un bit nul entre chacun des 16 bits de poids faible
+     */
+    private static int spread(int v) {
+        v &= 0xFFFF;
+        v = (v | v << 8) & 0x00FF00FF;
+        v = (v | v << 4) & 0x0F0F0F0F;
+        v = (v | v << 2) & 0x33333333;
+        v = (v | v << 1) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * Opération inverse de spread, appliquée aux bits de rang pair
+     */
+    private static int compress(int v) {
+        v &= 0x55555555;
+        v = (v | v >>> 1) & 0x33333333;
+        v = (v | v >>> 2) & 0x0F0F0F0F;
+        v = (v | v >>> 4) & 0x00FF00FF;
+        v = (v | v >>> 8) & 0x0000FFFF;
+        return v;
+    }
+
+    private static double[] unitVector(double ra, double dec) {
+        double cosDec = Math.cos(dec);
+        return new double[]{cosDec * Math.cos(ra), cosDec * Math.sin(ra),
+                Math.sin(dec)};
+    }
+
+    /**
+     * Région de la sphère céleste
+     */
+    private interface Region {
+
+        /**
+         * Classe la calotte de centre et de rayon donnés par rapport à la
+         * région : OUTSIDE, PARTIAL ou INSIDE
+         */
+        int classify(double[] center, double radius);
+
+        boolean contains(double x, double y, double z);
+    }
+
+    private interface RangeAction {
+        void accept(int from, int to);
+    }
+
+    private interface PixelAction {
+        void accept(int order, int pixel, int classification);
+    }
+
+    /**
+     * Cône (calotte sphérique) de centre et de rayon donnés
+     */
+    private static final class Cone implements Region {
+
+        private final double[] axis;
+        private final double radius;
+        private final double cosRadius;
+
+        private Cone(double ra, double dec, double radius) {
+            this.axis = unitVector(ra, dec);
+            this.radius = radius;
+            this.cosRadius = Math.cos(radius);
+        }
+
+        @Override
+        public int classify(double[] center, double pixelRadius) {
+            double dot = axis[0] * center[0] + axis[1] * center[1]
+                    + axis[2] * center[2];
+            double distance = Math.acos(Math.max(-1, Math.min(1, dot)));
+            if (distance - pixelRadius > radius)
+                return OUTSIDE;
+            return distance + pixelRadius <= radius ? INSIDE : PARTIAL;
+        }
+
+        @Override
+        public boolean contains(double x, double y, double z) {
+            return axis[0] * x + axis[1] * y + axis[2] * z >= cosRadius;
+        }
+    }
+
+    /**
+     * Polygone sphérique convexe, intersection des hémisphères délimités par
+     * les grands cercles de ses côtés
+     */
+    private static final class Polygon implements Region {
+
+        private final double[][] normals;
+
+        private Polygon(List<EquatorialCoordinates> vertices) {
+            Preconditions.checkArgument(vertices.size() >= 3);
+
+            int n = vertices.size();
+            double[][] v = new double[n][];
+            double[] centroid = new double[3];
+            for (int i = 0; i < n; ++i) {
+                v[i] = unitVector(vertices.get(i).ra(), vertices.get(i).dec());
+                for (int c = 0; c < 3; ++c)
+                    centroid[c] += v[i][c];
+            }
+
+            normals = new double[n][];
+            for (int i = 0; i < n; ++i) {
+                double[] a = v[i];
+                double[] b = v[(i + 1) % n];
+                double[] normal = {a[1] * b[2] - a[2] * b[1],
+                        a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]};
+                double norm = Math.sqrt(normal[0] * normal[0]
+                        + normal[1] * normal[1] + normal[2] * normal[2]);
+                double sign = normal[0] * centroid[0] + normal[1] * centroid[1]
+                        + normal[2] * centroid[2] < 0 ? -1 : 1;
+                for (int c = 0; c < 3; ++c)
+                    normal[c] *= sign / norm;
+                normals[i] = normal;
+            }
+        }
+
+        @Override
+        public int classify(double[] center, double pixelRadius) {
+            double sinRadius = Math.sin(pixelRadius);
+            int classification = INSIDE;
+            for (double[] normal : normals) {
+                double dot = normal[0] * center[0] + normal[1] * center[1]
+                        + normal[2] * center[2];
+                if (dot < -sinRadius)
+                    return OUTSIDE;
+                if (dot < sinRadius)
+                    classification = PARTIAL;
+            }
+            return classification;
+        }
+
+        @Override
+        public boolean contains(double x, double y, double z) {
+            for (double[] normal : normals) {
+                if (normal[0] * x + normal[1] * y + normal[2] * z < 0)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Tableau d'entiers extensible
+     */
+    private static final class IntCollector implements IntConsumer {
+
+        private int[] values = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        private int[] sorted() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.Arrays;
+
+/**
+ * Ordre spatial des étoiles : chaque position de la sphère céleste est
+ * associée à sa clé sur la courbe de Morton (ordre Z) parcourant le cube
+ * qui contient la sphère unité, si bien que des étoiles voisines dans le
+ * ciel ont en général des clés proches.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+final class SpatialOrder {
+
+    private final static int BITS_PER_AXIS = 21;
+    private final static double SCALE = (1 << BITS_PER_AXIS) - 1;
+
+    private final static int RADIX_BITS = 8;
+    private final static int RADIX = 1 << RADIX_BITS;
+
+    private SpatialOrder() {
+    }
+
+    /**
+     * Retourne la clé de Morton de la position donnée
+     *
+     * @param ra
+     *            ascension droite, en radians
+     * @param dec
+     *            déclinaison, en radians
+     * @return la clé, positive ou nulle
+     */
+    static long mortonKey(double ra, double dec) {
+        double cosDec = Math.cos(dec);
+        return spread(quantize(cosDec * Math.cos(ra))) << 2
+                | spread(quantize(cosDec * Math.sin(ra))) << 1
+                | spread(quantize(Math.sin(dec)));
+    }
+
+    /**
+     * Retourne la permutation triant les étoiles du catalogue par clé de
+     * Morton croissante : le i-ème élément est l'index, dans le catalogue, de
+     * la i-ème étoile dans l'ordre spatial. Le tri est stable.
+     *
+     * @param catalogue
+     *            catalogue
+     * @return la permutation
+     */
+    static int[] order(StarCatalogue catalogue) {
+        int count = catalogue.starCount();
+        long[] keys = new long[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = mortonKey(catalogue.starRa(i), catalogue.starDec(i));
+            order[i] = i;
+        }
+
+        // Tri par base, octet par octet en partant du poids faible
+        int[] sorted = new int[count];
+        int[] counts = new int[RADIX + 1];
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i : order)
+                ++counts[digit(keys[i], shift) + 1];
+            for (int d = 0; d < RADIX; ++d)
+                counts[d + 1] += counts[d];
+            for (int i : order)
+                sorted[counts[digit(keys[i], shift)]++] = i;
+
+            int[] t = order;
+            order = sorted;
+            sorted = t;
+        }
+        return order;
+    }
+
+    private static int digit(long key, int shift) {
+        return (int) (key >>> shift) & (RADIX - 1);
+    }
+
+    private static long quantize(double coordinate) {
+        return Math.round((coordinate + 1) / 2 * SCALE);
+    }
+
+    /**
+     * Intercale deux bits nuls entre chacun des 21 bits de poids faible
+     */
+    private static long spread(long v) {
+        v &= 0x1FFFFFL;
+        v = (v | v << 32) & 0x1F00000000FFFFL;
+        v = (v | v << 16) & 0x1F0000FF0000FFL;
+        v = (v | v << 8) & 0x100F00F00F00F00FL;
+        v = (v | v << 4) & 0x10C30C30C30C30C3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+}
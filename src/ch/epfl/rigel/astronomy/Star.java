@@ -13,8 +13,11 @@ public final class Star extends CelestialObject {
     private static final ClosedInterval INTERVAL_COLORS = ClosedInterval.of(-.5,
             5.5);
 
+    private final static int NO_NAME_CODE = -1;
+
     private int hipparcosId;
     private float colorIndex;
+    private int nameCode;
 
     /**
      * Construit une étoile
@@ -44,6 +47,46 @@ public final class Star extends CelestialObject {
 
         this.hipparcosId = hipparcosId;
         this.colorIndex = colorIndex;
+        this.nameCode = NO_NAME_CODE;
+    }
+
+    /**
+     * Construit une étoile sans nom propre, nommée d'après sa désignation de
+     * Bayer et sa constellation ; seul le code du nom dans la table des noms
+     * est conservé, le nom n'étant construit qu'à la demande
+     *
+     * @param hipparcosId
+     *            le numéro Hipparcos
+     * @param bayer
+     *            la désignation de Bayer, "?" si elle est inconnue
+     * @param constellation
+     *            l'abréviation de la constellation
+     * @param equatorialPos
+     *            la position équatoriale
+     * @param magnitude
+     *            la magnitude
+     * @param colorIndex
+     *            l'indice de couleur
+     * @throws IllegalArgumentException
+     *             si le numéro Hipparcos est négatif, ou si l'indice de couleur
+     *             n'est pas compris dans l'intervalle [-0.5, 5.5].
+     */
+    Star(int hipparcosId, String bayer, String constellation,
+            EquatorialCoordinates equatorialPos, float magnitude,
+            float colorIndex) {
+        super(equatorialPos, 0, magnitude);
+
+        Preconditions.checkArgument(hipparcosId >= 0);
+        Preconditions.checkInInterval(INTERVAL_COLORS, colorIndex);
+
+        this.hipparcosId = hipparcosId;
+        this.colorIndex = colorIndex;
+        this.nameCode = StarNames.code(bayer, constellation);
+    }
+
+    @Override
+    public String name() {
+        return nameCode == NO_NAME_CODE ? super.name() : StarNames.name(nameCode);
     }
 
     /**
@@ -55,6 +98,25 @@ public final class Star extends CelestialObject {
         return hipparcosId;
     }
 
+    /**
+     * retourne le code du nom de l'étoile dans la table des noms, ou un
+     * nombre négatif si l'étoile a un nom propre
+     * 
+     * @return le code du nom
+     */
+    int nameCode() {
+        return nameCode;
+    }
+
+    /**
+     * retourne l'indice de couleur de l'étoile
+     * 
+     * @return l'indice de couleur de l'étoile
+     */
+    public double colorIndex() {
+        return colorIndex;
+    }
+
     /**
      * retourne la température de couleur de l'étoile, en degrés Kelvin
      * 
@@ -62,6 +124,18 @@ public final class Star extends CelestialObject {
      *         arrondie par défaut (c-à-d à l'entier inférieur le plus proche).
      */
     public int colorTemperature() {
+        return colorTemperature(colorIndex);
+    }
+
+    /**
+     * retourne la température de couleur, en degrés Kelvin, correspondant à
+     * l'indice de couleur donné
+     * 
+     * @param colorIndex
+     *            l'indice de couleur
+     * @return la température de couleur arrondie par défaut
+     */
+    static int colorTemperature(float colorIndex) {
         double T = 4600 * (1 / (0.92 * colorIndex + 1.7)
                 + 1 / (.92 * colorIndex + .62));
         return (int) Math.floor(T);
@@ -2,8 +2,11 @@ package ch.epfl.rigel.astronomy;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.IntBuffer;
 import java.util.*;
 
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
 /**
  * Représente un catalogue d'étoiles et d'astérismes
  *
@@ -13,11 +16,53 @@ import java.util.*;
 
 public final class StarCatalogue {
 
-    private final List<Star> stars;
+    private final StarView stars;
     private final List<Asterism> asterisms;
-    private final Map<Asterism, List<Integer>> asterismToIndex = new HashMap<>();
+    private final Map<Asterism, Integer> asterismOrdinal = new HashMap<>();
     private final List<Boundaries> boundaries;
 
+    // Vues immuables, calculées une fois, dans l'ordre d'ajout
+    private final Set<Asterism> asterismSet;
+    private final Set<Boundaries> boundariesSet;
+
+    // Colonnes parallèles : l'index i correspond à la i-ème étoile de stars.
+    // Les positions, magnitudes et indices de couleur sont rangés selon le
+    // stockage choisi
+    private final Storage storage;
+    private final StarColumns columns;
+    private final int[] starColorTemperature;
+    private final int[] starHipparcosId;
+
+    private final HipparcosIndex hipparcosIndex;
+
+    // Index des étoiles par magnitude croissante : les étoiles plus
+    // brillantes qu'une magnitude donnée forment un préfixe
+    private final int[] starsByMagnitude;
+
+    // Index des étoiles des astérismes, mis bout à bout : ceux du i-ème
+    // astérisme occupent les positions asterismOffsets[i] (inclus) à
+    // asterismOffsets[i + 1] (exclus) de asterismStarIndices
+    private final int[] asterismOffsets;
+    private final int[] asterismStarIndices;
+
+    // Segments de tous les astérismes : le i-ème relie les étoiles d'index
+    // asterismSegments[2i] et asterismSegments[2i + 1]
+    private final int[] asterismSegments;
+
+    // Points de toutes les limites de constellations, mis bout à bout : ceux
+    // de la i-ème limite occupent les positions boundaryOffsets[i] (inclus) à
+    // boundaryOffsets[i + 1] (exclus)
+    private final int[] boundaryOffsets;
+    private final double[] boundaryRa;
+    private final double[] boundaryDec;
+
+    // Index spatial, construit à la première demande
+    private volatile SkyPixelIndex pixelIndex;
+
+    // Vecteurs unitaires des positions équatoriales des étoiles, calculés à
+    // la première demande : celui de la i-ème occupe les positions 3i à 3i + 2
+    private volatile double[] starUnitVectors;
+
     /**
      * Construit un catalogue constitué des étoiles stars et des astérismes
      * asterisms.
@@ -28,45 +73,364 @@ public final class StarCatalogue {
      *                                  partie de la liste d'étoiles
      */
     public StarCatalogue(List<Star> stars, List<Asterism> asterisms, List<Boundaries> boundaries) {
+        this(stars, asterisms, boundaries, Storage.HEAP);
+    }
+
+    private StarCatalogue(List<Star> stars, List<Asterism> asterisms, List<Boundaries> boundaries,
+                          Storage storage) {
 
-        this.stars = List.copyOf(stars);
+        this.storage = storage;
         this.asterisms = List.copyOf(asterisms);
         this.boundaries = List.copyOf(boundaries);
+        this.asterismSet = Collections.unmodifiableSet(new LinkedHashSet<>(this.asterisms));
+        this.boundariesSet = Collections.unmodifiableSet(new LinkedHashSet<>(this.boundaries));
+
+        int count = stars.size();
+        this.columns = StarColumns.of(storage, count);
+        this.starColorTemperature = new int[count];
+        this.starHipparcosId = new int[count];
+        int[] starNameCode = new int[count];
+        String[] properNames = new String[count];
+        for (int i = 0; i < count; ++i) {
+            Star star = stars.get(i);
+            columns.set(i, star.equatorialPos().ra(), star.equatorialPos().dec(),
+                    (float) star.magnitude(), (float) star.colorIndex());
+            starColorTemperature[i] = Star.colorTemperature(columns.colorIndex(i));
+            starHipparcosId[i] = star.hipparcosId();
+            starNameCode[i] = star.nameCode();
+            if (star.nameCode() < 0)
+                properNames[i] = star.name();
+        }
+        this.stars = new StarView(starNameCode, properNames);
+        this.hipparcosIndex = HipparcosIndex.of(starHipparcosId);
+
+        long[] magnitudeKeys = new long[count];
+        for (int i = 0; i < count; ++i)
+            magnitudeKeys[i] = (long) sortableBits(columns.magnitude(i)) << 32 | i;
+        Arrays.sort(magnitudeKeys);
+        this.starsByMagnitude = new int[count];
+        for (int r = 0; r < count; ++r)
+            starsByMagnitude[r] = (int) magnitudeKeys[r];
 
-        for (Asterism as : asterisms) {
-            for (Star st : as.stars()) {
-                if (!stars.contains(st))
+        Map<Star, Integer> starToIndex = new IdentityHashMap<>(count);
+        for (int i = 0; i < count; ++i)
+            starToIndex.putIfAbsent(stars.get(i), i);
+
+        int memberCount = 0;
+        for (Asterism as : this.asterisms)
+            memberCount += as.stars().size();
+
+        this.asterismOffsets = new int[this.asterisms.size() + 1];
+        this.asterismStarIndices = new int[memberCount];
+        this.asterismSegments = new int[2 * (memberCount - this.asterisms.size())];
+
+        int position = 0;
+        int segment = 0;
+        for (int a = 0; a < this.asterisms.size(); ++a) {
+            Asterism as = this.asterisms.get(a);
+            asterismOrdinal.putIfAbsent(as, a);
+            asterismOffsets[a] = position;
+
+            for (Star etoile : as.stars()) {
+                Integer index = starToIndex.get(etoile);
+                if (index == null)
                     throw new IllegalArgumentException();
+                if (position > asterismOffsets[a]) {
+                    asterismSegments[segment++] = asterismStarIndices[position - 1];
+                    asterismSegments[segment++] = index;
+                }
+                asterismStarIndices[position++] = index;
             }
         }
+        asterismOffsets[this.asterisms.size()] = position;
 
-        for (Asterism as : asterisms) {
-            List<Integer> indexList = new ArrayList<Integer>();
-            for (Star etoile : as.stars())
-                indexList.add(stars.indexOf(etoile));
+        int pointCount = 0;
+        for (Boundaries b : this.boundaries)
+            pointCount += b.pointCount();
 
-            asterismToIndex.put(as, indexList);
+        this.boundaryOffsets = new int[this.boundaries.size() + 1];
+        this.boundaryRa = new double[pointCount];
+        this.boundaryDec = new double[pointCount];
+
+        int point = 0;
+        for (int b = 0; b < this.boundaries.size(); ++b) {
+            Boundaries boundary = this.boundaries.get(b);
+            boundaryOffsets[b] = point;
+            for (int j = 0; j < boundary.pointCount(); ++j, ++point) {
+                boundaryRa[point] = boundary.ra(j);
+                boundaryDec[point] = boundary.dec(j);
+            }
         }
+        boundaryOffsets[this.boundaries.size()] = point;
     }
 
     /**
-     * Retourne la liste des étoiles du catalogue.
+     * Retourne la liste immuable des étoiles du catalogue. Le catalogue ne
+     * conserve pas d'instances de Star : la liste est une vue qui construit
+     * chaque étoile à la demande, à partir des valeurs stockées, si bien que
+     * deux accès à la même étoile retournent des instances distinctes, mais
+     * égales en tout point.
      *
      * @return la liste des étoiles du catalogue
      */
     public List<Star> stars() {
-        return Collections.unmodifiableList(stars);
+        return stars;
+    }
+
+    /**
+     * Retourne le stockage des positions, magnitudes et indices de couleur
+     * des étoiles.
+     *
+     * @return le stockage du catalogue
+     */
+    public Storage storage() {
+        return storage;
+    }
+
+    /**
+     * Indique si les positions, magnitudes et indices de couleur des étoiles
+     * sont stockés hors du tas.
+     *
+     * @return vrai si et seulement si le catalogue est stocké hors du tas
+     */
+    public boolean isOffHeap() {
+        return storage == Storage.OFF_HEAP;
+    }
+
+    /**
+     * Retourne un catalogue contenant les mêmes étoiles, astérismes et
+     * limites, mais dont les étoiles sont rangées le long d'une courbe de
+     * Morton parcourant la sphère céleste : des étoiles proches dans le ciel
+     * sont alors en général proches dans les tableaux du catalogue. Les
+     * index des astérismes et l'index Hipparcos correspondent au nouvel
+     * ordre.
+     *
+     * @return le catalogue ordonné spatialement
+     */
+    public StarCatalogue spatiallyOrdered() {
+        // Les étoiles des astérismes sont reprises des astérismes eux-mêmes,
+        // la vue d'un catalogue hors du tas construisant de nouvelles
+        // instances
+        Star[] members = new Star[starCount()];
+        for (int a = 0; a < asterisms.size(); ++a) {
+            List<Star> asterismStars = asterisms.get(a).stars();
+            for (int j = 0; j < asterismStars.size(); ++j)
+                members[asterismStarIndices[asterismOffsets[a] + j]] = asterismStars.get(j);
+        }
+
+        int[] order = SpatialOrder.order(this);
+        List<Star> ordered = new ArrayList<>(order.length);
+        for (int index : order)
+            ordered.add(members[index] != null ? members[index] : stars.get(index));
+        return new StarCatalogue(ordered, asterisms, boundaries, storage);
+    }
+
+    /**
+     * Retourne l'index spatial des étoiles du catalogue, construit lors du
+     * premier appel.
+     *
+     * @return l'index spatial
+     */
+    public SkyPixelIndex pixelIndex() {
+        SkyPixelIndex index = pixelIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pixelIndex;
+                if (index == null)
+                    pixelIndex = index = SkyPixelIndex.of(this);
+            }
+        }
+        return index;
     }
 
     /**
-     * Retourne l'ensemble des astérismes du catalogue.
+     * Retourne les coordonnées cartésiennes des vecteurs unitaires pointant
+     * vers les étoiles dans le repère équatorial, calculées lors du premier
+     * appel : celles de l'étoile d'index i sont (cos δ cos α, cos δ sin α,
+     * sin δ) et occupent les positions 3i à 3i + 2 du tableau, qui ne doit
+     * pas être modifié.
+     *
+     * @return le tableau des vecteurs unitaires
+     */
+    double[] starUnitVectors() {
+        double[] vectors = starUnitVectors;
+        if (vectors == null) {
+            synchronized (this) {
+                vectors = starUnitVectors;
+                if (vectors == null) {
+                    vectors = new double[3 * starCount()];
+                    for (int i = 0; i < starCount(); i++) {
+                        double ra = columns.ra(i);
+                        double cosDec = Math.cos(columns.dec(i));
+                        vectors[3 * i] = cosDec * Math.cos(ra);
+                        vectors[3 * i + 1] = cosDec * Math.sin(ra);
+                        vectors[3 * i + 2] = Math.sin(columns.dec(i));
+                    }
+                    starUnitVectors = vectors;
+                }
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Retourne le nombre d'étoiles du catalogue.
+     *
+     * @return le nombre d'étoiles du catalogue
+     */
+    public int starCount() {
+        return columns.count();
+    }
+
+    /**
+     * Retourne l'ascension droite, en radians, de l'étoile d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return l'ascension droite de l'étoile
+     */
+    public double starRa(int index) {
+        return columns.ra(index);
+    }
+
+    /**
+     * Retourne la déclinaison, en radians, de l'étoile d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return la déclinaison de l'étoile
+     */
+    public double starDec(int index) {
+        return columns.dec(index);
+    }
+
+    /**
+     * Retourne la magnitude de l'étoile d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return la magnitude de l'étoile
+     */
+    public double starMagnitude(int index) {
+        return columns.magnitude(index);
+    }
+
+    /**
+     * Retourne l'indice de couleur de l'étoile d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return l'indice de couleur de l'étoile
+     */
+    public double starColorIndex(int index) {
+        return columns.colorIndex(index);
+    }
+
+    /**
+     * Retourne la température de couleur, en degrés Kelvin, de l'étoile
+     * d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return la température de couleur de l'étoile
+     */
+    public int starColorTemperature(int index) {
+        return starColorTemperature[index];
+    }
+
+    /**
+     * Retourne le numéro Hipparcos de l'étoile d'index donné.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return le numéro Hipparcos de l'étoile
+     */
+    public int starHipparcosId(int index) {
+        return starHipparcosId[index];
+    }
+
+    /**
+     * Retourne le nom de l'étoile d'index donné, sans construire d'instance
+     * de Star.
+     *
+     * @param index l'index de l'étoile dans le catalogue
+     * @return le nom de l'étoile
+     */
+    public String starName(int index) {
+        return stars.name(index);
+    }
+
+    /**
+     * Retourne l'index de l'étoile de numéro Hipparcos donné. Si plusieurs
+     * étoiles partagent ce numéro, la dernière du catalogue est retenue.
+     *
+     * @param hipparcosId le numéro Hipparcos
+     * @return l'index de l'étoile, ou -1 si aucune étoile n'a ce numéro
+     */
+    public int starIndexOfHipparcos(int hipparcosId) {
+        return hipparcosIndex.get(hipparcosId);
+    }
+
+    /**
+     * Retourne l'étoile de numéro Hipparcos donné.
+     *
+     * @param hipparcosId le numéro Hipparcos
+     * @return l'étoile, ou Optional.empty() si aucune étoile n'a ce numéro
+     */
+    public Optional<Star> starByHipparcos(int hipparcosId) {
+        int index = hipparcosIndex.get(hipparcosId);
+        return index < 0 ? Optional.empty() : Optional.of(stars.get(index));
+    }
+
+    /**
+     * Retourne le nombre d'étoiles du catalogue de magnitude inférieure ou
+     * égale à la magnitude donnée, par recherche dichotomique.
+     *
+     * @param magnitude la magnitude limite
+     * @return le nombre d'étoiles plus brillantes que la magnitude limite
+     */
+    public int brighterThanCount(double magnitude) {
+        int low = 0;
+        int high = starsByMagnitude.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns.magnitude(starsByMagnitude[mid]) <= magnitude)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Retourne l'index — dans le catalogue — de l'étoile de rang donné dans
+     * l'ordre des magnitudes croissantes, les étoiles de même magnitude étant
+     * rangées par index croissant.
+     *
+     * @param rank le rang de l'étoile, la plus brillante ayant le rang 0
+     * @return l'index de l'étoile
+     * @throws IndexOutOfBoundsException si le rang est invalide
+     */
+    public int starIndexByMagnitude(int rank) {
+        return starsByMagnitude[rank];
+    }
+
+    /**
+     * Retourne une vue en lecture seule, sans copie, des index — dans le
+     * catalogue — des étoiles de magnitude inférieure ou égale à la magnitude
+     * donnée, de la plus brillante à la moins brillante.
+     *
+     * @param magnitude la magnitude limite
+     * @return la vue des index des étoiles plus brillantes que la magnitude
+     * limite
+     */
+    public IntBuffer starsBrighterThan(double magnitude) {
+        return IntBuffer.wrap(starsByMagnitude, 0, brighterThanCount(magnitude))
+                .slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Retourne l'ensemble immuable des astérismes du catalogue, itéré dans
+     * leur ordre d'ajout ; le même ensemble est retourné à chaque appel.
      *
      * @return l'ensemble des astérismes du catalogue
      */
     public Set<Asterism> asterisms() {
-        Set<Asterism> set = new HashSet<Asterism>();
-        set.addAll(asterisms);
-        return set;
+        return asterismSet;
     }
 
     /**
@@ -76,23 +440,131 @@ public final class StarCatalogue {
      * @throws IllegalArgumentException si l'astérisme donné ne fait pas partie du catalogue
      */
     public List<Integer> asterismIndices(Asterism asterism) {
-        if (!asterisms.contains(asterism)) {
+        int a = ordinalOf(asterism);
+        return new IntArrayView(asterismStarIndices, asterismOffsets[a],
+                asterismOffsets[a + 1]);
+    }
+
+    /**
+     * Retourne une vue en lecture seule, sans copie, des index — dans le
+     * catalogue — des étoiles constituant l'astérisme donné.
+     *
+     * @param asterism l'astérisme donné
+     * @return la vue des index des étoiles de l'astérisme
+     * @throws IllegalArgumentException si l'astérisme donné ne fait pas partie du catalogue
+     */
+    public IntBuffer asterismIndexBuffer(Asterism asterism) {
+        int a = ordinalOf(asterism);
+        return IntBuffer.wrap(asterismStarIndices, asterismOffsets[a],
+                asterismOffsets[a + 1] - asterismOffsets[a]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Retourne le nombre total de segments reliant deux étoiles consécutives
+     * d'un astérisme, tous astérismes confondus.
+     *
+     * @return le nombre de segments des astérismes
+     */
+    public int asterismSegmentCount() {
+        return asterismSegments.length / 2;
+    }
+
+    /**
+     * Retourne l'index — dans le catalogue — de l'étoile de départ du
+     * segment d'astérisme d'index donné.
+     *
+     * @param segment l'index du segment
+     * @return l'index de l'étoile de départ du segment
+     */
+    public int asterismSegmentFrom(int segment) {
+        return asterismSegments[2 * segment];
+    }
+
+    /**
+     * Retourne l'index — dans le catalogue — de l'étoile d'arrivée du
+     * segment d'astérisme d'index donné.
+     *
+     * @param segment l'index du segment
+     * @return l'index de l'étoile d'arrivée du segment
+     */
+    public int asterismSegmentTo(int segment) {
+        return asterismSegments[2 * segment + 1];
+    }
+
+    private int ordinalOf(Asterism asterism) {
+        Integer a = asterismOrdinal.get(asterism);
+        if (a == null)
             throw new IllegalArgumentException();
-        } else {
-            List<Integer> ls = List.copyOf(asterismToIndex.get(asterism));
-            return ls;
-        }
+        return a;
     }
 
     /**
-     * Retourne l'ensemble des limites des constellations
+     * Retourne l'ensemble immuable des limites des constellations, itéré
+     * dans leur ordre d'ajout ; le même ensemble est retourné à chaque appel.
      *
      * @return l'ensemble des limites des constellations
      */
     public Set<Boundaries> boundaries() {
-        Set<Boundaries> set = new HashSet<>();
-        set.addAll(boundaries);
-        return set;
+        return boundariesSet;
+    }
+
+    /**
+     * Retourne le nombre de limites de constellations du catalogue.
+     *
+     * @return le nombre de limites
+     */
+    public int boundaryCount() {
+        return boundaryOffsets.length - 1;
+    }
+
+    /**
+     * Retourne le nombre total de points des limites de constellations.
+     *
+     * @return le nombre de points des limites
+     */
+    public int boundaryPointCount() {
+        return boundaryRa.length;
+    }
+
+    /**
+     * Retourne l'index du premier point de la limite d'index donné ; les
+     * points de la limite i sont ceux d'index boundaryOffset(i) (inclus) à
+     * boundaryOffset(i + 1) (exclus).
+     *
+     * @param boundary l'index de la limite, entre 0 et boundaryCount() inclus
+     * @return l'index du premier point de la limite
+     */
+    public int boundaryOffset(int boundary) {
+        return boundaryOffsets[boundary];
+    }
+
+    /**
+     * Retourne l'ascension droite, en radians, du point de limite d'index
+     * donné.
+     *
+     * @param point l'index du point
+     * @return l'ascension droite du point
+     */
+    public double boundaryRa(int point) {
+        return boundaryRa[point];
+    }
+
+    /**
+     * Retourne la déclinaison, en radians, du point de limite d'index donné.
+     *
+     * @param point l'index du point
+     * @return la déclinaison du point
+     */
+    public double boundaryDec(int point) {
+        return boundaryDec[point];
+    }
+
+    /**
+     * Retourne un entier dont l'ordre naturel est celui du nombre donné
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
     }
 
     /**
@@ -103,6 +575,7 @@ public final class StarCatalogue {
         private List<Star> starsBuilder;
         private List<Asterism> asterismsBuilder;
         private List<Boundaries> boundariesBuilder;
+        private HipparcosIndex hipparcosIndex;
 
         /**
          * Constructeur par défaut qui initialise le bâtisseur
@@ -111,6 +584,7 @@ public final class StarCatalogue {
             this.starsBuilder = new ArrayList<>();
             this.asterismsBuilder = new ArrayList<>();
             this.boundariesBuilder = new ArrayList<>();
+            this.hipparcosIndex = new HipparcosIndex(0);
         }
 
         /**
@@ -120,10 +594,23 @@ public final class StarCatalogue {
          * @return le bâtisseur
          */
         public Builder addStar(Star star) {
+            hipparcosIndex.put(star.hipparcosId(), starsBuilder.size());
             starsBuilder.add(star);
             return this;
         }
 
+        /**
+         * Retourne l'index, dans le catalogue en cours de construction, de
+         * l'étoile de numéro Hipparcos donné. Si plusieurs étoiles partagent
+         * ce numéro, la dernière ajoutée est retenue.
+         *
+         * @param hipparcosId le numéro Hipparcos
+         * @return l'index de l'étoile, ou -1 si aucune étoile n'a ce numéro
+         */
+        public int starIndexOfHipparcos(int hipparcosId) {
+            return hipparcosIndex.get(hipparcosId);
+        }
+
         /**
          * @return retourne une vue non modifiable — mais pas immuable — sur les
          * étoiles du catalogue en cours de construction
@@ -143,6 +630,14 @@ public final class StarCatalogue {
             return this;
         }
 
+        /**
+         * @return retourne une vue non modifiable — mais pas immuable — sur les
+         * astérismes du catalogue en cours de construction
+         */
+        public List<Asterism> asterisms() {
+            return Collections.unmodifiableList(asterismsBuilder);
+        }
+
         /**
          * Ajoute les limites des constellations donné au catalogue
          * en cours de construction
@@ -155,6 +650,42 @@ public final class StarCatalogue {
             return this;
         }
 
+        /**
+         * @return retourne une vue non modifiable — mais pas immuable — sur les
+         * limites des constellations du catalogue en cours de construction
+         */
+        public List<Boundaries> boundaries() {
+            return Collections.unmodifiableList(boundariesBuilder);
+        }
+
+        /**
+         * Ajoute au bâtisseur, à la suite des siens, les éléments du
+         * bâtisseur donné, qui ne doit plus être utilisé ensuite : les
+         * listes encore vides de ce bâtisseur sont remplacées par celles de
+         * l'autre plutôt que remplies élément par élément
+         *
+         * @param other bâtisseur dont les éléments sont repris
+         * @return le bâtisseur
+         */
+        Builder addAll(Builder other) {
+            if (starsBuilder.isEmpty()) {
+                starsBuilder = other.starsBuilder;
+                hipparcosIndex = other.hipparcosIndex;
+            } else {
+                for (Star star : other.starsBuilder)
+                    addStar(star);
+            }
+            if (asterismsBuilder.isEmpty())
+                asterismsBuilder = other.asterismsBuilder;
+            else
+                asterismsBuilder.addAll(other.asterismsBuilder);
+            if (boundariesBuilder.isEmpty())
+                boundariesBuilder = other.boundariesBuilder;
+            else
+                boundariesBuilder.addAll(other.boundariesBuilder);
+            return this;
+        }
+
         /**
          * demande au chargeur loader d'ajouter au catalogue les étoiles et/ou
          * astérismes et/ou limites de constellationsqu'il obtient depuis le
@@ -181,6 +712,46 @@ public final class StarCatalogue {
             return new StarCatalogue(starsBuilder, asterismsBuilder, boundariesBuilder);
         }
 
+        /**
+         * @return Retourne le catalogue contenant les étoiles, astérismes et les limites des constellations
+         * ajoutés jusqu'alors au bâtisseur, dont les positions, magnitudes et indices de couleur
+         * des étoiles sont stockés hors du tas
+         */
+        public StarCatalogue buildOffHeap() {
+            return build(Storage.OFF_HEAP);
+        }
+
+        /**
+         * @param storage le stockage des positions, magnitudes et indices de couleur des étoiles
+         * @return Retourne le catalogue contenant les étoiles, astérismes et les limites des constellations
+         * ajoutés jusqu'alors au bâtisseur, stocké selon le stockage donné
+         */
+        public StarCatalogue build(Storage storage) {
+            return new StarCatalogue(starsBuilder, asterismsBuilder, boundariesBuilder, storage);
+        }
+
+    }
+
+    /**
+     * représente le stockage des positions, magnitudes et indices de couleur
+     * des étoiles d'un catalogue.
+     */
+    public enum Storage {
+        /**
+         * valeurs exactes dans des tableaux du tas
+         */
+        HEAP,
+        /**
+         * valeurs exactes hors du tas
+         */
+        OFF_HEAP,
+        /**
+         * valeurs quantifiées dans le tas : positions
+         * en virgule fixe sur 32 bits (erreur inférieure à 10^-9 rad),
+         * magnitude au millième et indice de couleur à 5·10^-5 près, sur
+         * 16 bits chacun ; une étoile occupe 12 octets au lieu de 24
+         */
+        COMPACT
     }
 
     /**
@@ -200,4 +771,70 @@ public final class StarCatalogue {
         void load(InputStream inputStream, Builder builder) throws IOException;
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Vue en lecture seule des étoiles du catalogue, construites à la demande
+     * à partir des colonnes
+     */
+    private final class StarView extends AbstractList<Star> implements RandomAccess {
+
+        private final int[] nameCodes;
+        // Noms des étoiles dont le nom n'est pas codé, null pour les autres
+        private final String[] properNames;
+
+        private StarView(int[] nameCodes, String[] properNames) {
+            this.nameCodes = nameCodes;
+            this.properNames = properNames;
+        }
+
+        @Override
+        public Star get(int index) {
+            Objects.checkIndex(index, size());
+            EquatorialCoordinates pos = EquatorialCoordinates.of(columns.ra(index), columns.dec(index));
+            int code = nameCodes[index];
+            return code < 0
+                    ? new Star(starHipparcosId[index], properNames[index], pos,
+                    columns.magnitude(index), columns.colorIndex(index))
+                    : new Star(starHipparcosId[index], StarNames.bayer(code), StarNames.constellation(code),
+                    pos, columns.magnitude(index), columns.colorIndex(index));
+        }
+
+        @Override
+        public int size() {
+            return nameCodes.length;
+        }
+
+        private String name(int index) {
+            int code = nameCodes[index];
+            return code < 0 ? properNames[index] : StarNames.name(code);
+        }
+    }
+
+    /**
+     * Vue en lecture seule d'une tranche de tableau d'entiers
+     */
+    private static final class IntArrayView extends AbstractList<Integer>
+            implements RandomAccess {
+
+        private final int[] array;
+        private final int from;
+        private final int to;
+
+        private IntArrayView(int[] array, int from, int to) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, size());
+            return array[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package ch.epfl.rigel.astronomy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Colonnes des positions, magnitudes et indices de couleur des étoiles d'un
+ * catalogue, selon l'un des stockages de {@link StarCatalogue.Storage}.
+ *
+ * Le stockage compact quantifie chaque valeur sur un nombre fixe de bits ;
+ * l'erreur commise, bornée par la moitié du pas de quantification, est d'au
+ * plus :
+ * <ul>
+ * <li>ascension droite, sur 32 bits : 2π / 2^33 ≈ 7,3·10^-10 rad (0,15 mas) ;</li>
+ * <li>déclinaison, sur 32 bits : π / 2^33 ≈ 3,7·10^-10 rad (0,08 mas) ;</li>
+ * <li>magnitude, sur 16 bits, au millième près entre -32,768 et 32,767 :
+ * 5·10^-4 ;</li>
+ * <li>indice de couleur, sur 16 bits entre -0,5 et 5,5 : 6 / 2^17 ≈
+ * 4,6·10^-5.</li>
+ * </ul>
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+abstract class StarColumns {
+
+    private StarColumns() {
+    }
+
+    /**
+     * Retourne des colonnes de la taille donnée, selon le stockage donné
+     *
+     * @param storage
+     *            stockage
+     * @param count
+     *            nombre d'étoiles
+     * @return les colonnes, dont toutes les valeurs sont nulles
+     */
+    static StarColumns of(StarCatalogue.Storage storage, int count) {
+        switch (storage) {
+            case HEAP:
+                return new ArrayColumns(count);
+            case OFF_HEAP:
+                // Colonnes mises bout à bout dans un unique tampon direct
+                ByteBuffer columns = ByteBuffer
+                        .allocateDirect(count * (2 * Double.BYTES + 2 * Float.BYTES))
+                        .order(ByteOrder.nativeOrder());
+                int doubles = count * Double.BYTES;
+                int floats = count * Float.BYTES;
+                return new BufferColumns(
+                        slice(columns, 0, doubles).asDoubleBuffer(),
+                        slice(columns, doubles, doubles).asDoubleBuffer(),
+                        slice(columns, 2 * doubles, floats).asFloatBuffer(),
+                        slice(columns, 2 * doubles + floats, floats).asFloatBuffer());
+            case COMPACT:
+                return new CompactColumns(count);
+            default:
+                throw new Error();
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+        return buffer.slice(from, length).order(buffer.order());
+    }
+
+    /**
+     * @return le nombre d'étoiles
+     */
+    abstract int count();
+
+    /**
+     * Range les valeurs de l'étoile d'index donné
+     */
+    abstract void set(int index, double ra, double dec, float magnitude,
+            float colorIndex);
+
+    abstract double ra(int index);
+
+    abstract double dec(int index);
+
+    abstract float magnitude(int index);
+
+    abstract float colorIndex(int index);
+
+    /**
+     * Colonnes non quantifiées, dans des tableaux du tas
+     */
+    private static final class ArrayColumns extends StarColumns {
+
+        private final double[] ra;
+        private final double[] dec;
+        private final float[] magnitude;
+        private final float[] colorIndex;
+
+        private ArrayColumns(int count) {
+            this.ra = new double[count];
+            this.dec = new double[count];
+            this.magnitude = new float[count];
+            this.colorIndex = new float[count];
+        }
+
+        @Override
+        int count() {
+            return ra.length;
+        }
+
+        @Override
+        void set(int index, double ra, double dec, float magnitude,
+                float colorIndex) {
+            this.ra[index] = ra;
+            this.dec[index] = dec;
+            this.magnitude[index] = magnitude;
+            this.colorIndex[index] = colorIndex;
+        }
+
+        @Override
+        double ra(int index) {
+            return ra[index];
+        }
+
+        @Override
+        double dec(int index) {
+            return dec[index];
+        }
+
+        @Override
+        float magnitude(int index) {
+            return magnitude[index];
+        }
+
+        @Override
+        float colorIndex(int index) {
+            return colorIndex[index];
+        }
+    }
+
+    /**
+     * Colonnes non quantifiées, dans des tampons directs
+     */
+    private static final class BufferColumns extends StarColumns {
+
+        private final DoubleBuffer ra;
+        private final DoubleBuffer dec;
+        private final FloatBuffer magnitude;
+        private final FloatBuffer colorIndex;
+
+        private BufferColumns(DoubleBuffer ra, DoubleBuffer dec,
+                FloatBuffer magnitude, FloatBuffer colorIndex) {
+            this.ra = ra;
+            this.dec = dec;
+            this.magnitude = magnitude;
+            this.colorIndex = colorIndex;
+        }
+
+        @Override
+        int count() {
+            return ra.capacity();
+        }
+
+        @Override
+        void set(int index, double ra, double dec, float magnitude,
+                float colorIndex) {
+            this.ra.put(index, ra);
+            this.dec.put(index, dec);
+            this.magnitude.put(index, magnitude);
+            this.colorIndex.put(index, colorIndex);
+        }
+
+        @Override
+        double ra(int index) {
+            return ra.get(index);
+        }
+
+        @Override
+        double dec(int index) {
+            return dec.get(index);
+        }
+
+        @Override
+        float magnitude(int index) {
+            return magnitude.get(index);
+        }
+
+        @Override
+        float colorIndex(int index) {
+            return colorIndex.get(index);
+        }
+    }
+
+    /**
+     * Colonnes quantifiées : positions en virgule fixe sur 32 bits, magnitude
+     * et indice de couleur sur 16 bits chacun, réunis dans un même entier
+     */
+    private static final class CompactColumns extends StarColumns {
+
+        private final static double TWO_TO_32 = 0x1p32;
+        private final static double MAX_DEC_STEP = TWO_TO_32 - 1;
+        private final static double RA_SCALE = 2 * Math.PI / TWO_TO_32;
+        private final static double DEC_SCALE = Math.PI / MAX_DEC_STEP;
+
+        private final static float MAGNITUDE_SCALE = 1000f;
+        private final static float MIN_COLOR_INDEX = -0.5f;
+        private final static float COLOR_INDEX_RANGE = 6f;
+        private final static int MAX_COLOR_STEP = 0xFFFF;
+
+        private final int[] ra;
+        private final int[] dec;
+        private final int[] magnitudeAndColor;
+
+        private CompactColumns(int count) {
+            this.ra = new int[count];
+            this.dec = new int[count];
+            this.magnitudeAndColor = new int[count];
+        }
+
+        @Override
+        int count() {
+            return ra.length;
+        }
+
+        @Override
+        void set(int index, double ra, double dec, float magnitude,
+                float colorIndex) {
+            this.ra[index] = (int) Math.round(ra / RA_SCALE);
+            this.dec[index] = (int) Math.round((dec + Math.PI / 2) / DEC_SCALE);
+
+            int m = Math.round(magnitude * MAGNITUDE_SCALE);
+            int c = Math.round((colorIndex - MIN_COLOR_INDEX)
+                    / COLOR_INDEX_RANGE * MAX_COLOR_STEP);
+            this.magnitudeAndColor[index] = clamp(m, Short.MIN_VALUE, Short.MAX_VALUE) << 16
+                    | clamp(c, 0, MAX_COLOR_STEP);
+        }
+
+        @Override
+        double ra(int index) {
+            return Integer.toUnsignedLong(ra[index]) * RA_SCALE;
+        }
+
+        @Override
+        double dec(int index) {
+            double d = Integer.toUnsignedLong(dec[index]) * DEC_SCALE - Math.PI / 2;
+            return Math.max(-Math.PI / 2, Math.min(Math.PI / 2, d));
+        }
+
+        @Override
+        float magnitude(int index) {
+            return (magnitudeAndColor[index] >> 16) / MAGNITUDE_SCALE;
+        }
+
+        @Override
+        float colorIndex(int index) {
+            float c = (magnitudeAndColor[index] & MAX_COLOR_STEP)
+                    * COLOR_INDEX_RANGE / MAX_COLOR_STEP + MIN_COLOR_INDEX;
+            return Math.max(MIN_COLOR_INDEX,
+                    Math.min(MIN_COLOR_INDEX + COLOR_INDEX_RANGE, c));
+        }
+
+        private static int clamp(int v, int min, int max) {
+            return Math.max(min, Math.min(max, v));
+        }
+    }
+}
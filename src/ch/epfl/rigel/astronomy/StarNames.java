@@ -0,0 +1,120 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Table des noms d'étoiles sans nom propre.
+ *
+ * Ces étoiles sont nommées d'après leur désignation de Bayer et l'abréviation
+ * de leur constellation. Chacune de ces deux parties n'est stockée qu'une
+ * seule fois dans la table, et une étoile n'en conserve qu'un code ; le nom
+ * affiché n'est construit qu'à la demande.
+ *
+ * La table ne fait que croître, mais ne contient que les désignations de
+ * Bayer et abréviations de constellations distinctes, soit quelques
+ * centaines de parties pour tout catalogue. Seuls les ajouts prennent un
+ * verrou : les lectures se font sans verrou dans le tableau publié, dont
+ * les cases déjà remplies ne sont jamais modifiées.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+final class StarNames {
+
+    private final static int PART_BITS = 16;
+    private final static int PART_MASK = (1 << PART_BITS) - 1;
+    private final static int MAX_PARTS = 1 << (PART_BITS - 1);
+    private final static int INITIAL_CAPACITY = 256;
+
+    private final static Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final static Object lock = new Object();
+
+    // Parties indexées par leur code ; chaque ajout republie le tableau,
+    // éventuellement agrandi, après y avoir rangé la nouvelle partie
+    private static volatile String[] parts = new String[INITIAL_CAPACITY];
+    private static int partCount;
+
+    private StarNames() {
+    }
+
+    /**
+     * Retourne le code du nom formé de la désignation de Bayer et de
+     * l'abréviation de constellation données
+     *
+     * @param bayer
+     *            désignation de Bayer, "?" si elle est inconnue
+     * @param constellation
+     *            abréviation de la constellation
+     * @return le code du nom, positif ou nul
+     * @throws IllegalArgumentException
+     *             si la table est pleine
+     */
+    static int code(String bayer, String constellation) {
+        return part(bayer) << PART_BITS | part(constellation);
+    }
+
+    /**
+     * Retourne le nom correspondant au code donné
+     *
+     * @param code
+     *            code retourné par {@link #code(String, String)}
+     * @return le nom, de la forme « bayer constellation »
+     */
+    static String name(int code) {
+        return bayer(code) + " " + constellation(code);
+    }
+
+    /**
+     * Retourne la désignation de Bayer du nom correspondant au code donné
+     *
+     * @param code
+     *            code retourné par {@link #code(String, String)}
+     * @return la désignation de Bayer
+     */
+    static String bayer(int code) {
+        return parts[code >>> PART_BITS];
+    }
+
+    /**
+     * Retourne l'abréviation de constellation du nom correspondant au code
+     * donné
+     *
+     * @param code
+     *            code retourné par {@link #code(String, String)}
+     * @return l'abréviation de la constellation
+     */
+    static String constellation(int code) {
+        return parts[code & PART_MASK];
+    }
+
+    /**
+     * Retourne le nombre de parties de noms distinctes de la table
+     *
+     * @return la taille de la table
+     */
+    static int size() {
+        return codes.size();
+    }
+
+    private static int part(String part) {
+        Integer code = codes.get(part);
+        if (code != null)
+            return code;
+
+        synchronized (lock) {
+            return codes.computeIfAbsent(part, p -> {
+                Preconditions.checkArgument(partCount < MAX_PARTS);
+                String[] published = parts;
+                if (partCount == published.length)
+                    published = Arrays.copyOf(published, 2 * published.length);
+                published[partCount] = p;
+                parts = published;
+                return partCount++;
+            });
+        }
+    }
+}
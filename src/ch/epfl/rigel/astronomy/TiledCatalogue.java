@@ -0,0 +1,414 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.CartesianCoordinates;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import ch.epfl.rigel.math.Angle;
+
+/**
+ * Catalogue d'étoiles découpé en tuiles, produit par
+ * {@link TiledCatalogueWriter}, dont seules les tuiles couvrant le champ de
+ * vue sont chargées.
+ *
+ * Le fichier est constitué d'un en-tête (nombre magique, version, nombre de
+ * niveaux, puis magnitude limite et niveau de découpage HEALPix de chaque
+ * niveau), suivi de la table des tuiles — position, taille en octets et
+ * nombre d'étoiles de chacune, niveau par niveau et pixel par pixel — puis
+ * du contenu des tuiles, formé d'enregistrements d'étoiles au format de
+ * {@link BinaryCatalogueLoader}.
+ *
+ * Les tuiles sont lues à la demande dans le tas et conservées dans un cache ;
+ * les tuiles les moins récemment utilisées en sont retirées en premier, et
+ * libérées par le ramasse-miettes. Le budget mémoire donné borne la somme de
+ * la taille des tuiles du cache et de celle, estimée, du catalogue de la
+ * dernière sélection, stocké de manière compacte.
+ *
+ * L'application ne s'en sert pas, le catalogue HYG fourni tenant entièrement
+ * en mémoire ; il est destiné aux catalogues qui la dépassent.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class TiledCatalogue implements Closeable {
+
+    final static int MAGIC = 0x52474C54;
+    final static int VERSION = 2;
+    final static int TILE_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    // Estimation de la taille dans le tas d'une étoile d'un catalogue au
+    // stockage COMPACT, nom compris
+    private final static int SELECTED_STAR_BYTES = 48;
+
+    private final FileChannel channel;
+    private final long memoryBudget;
+
+    private final float[] levelMagnitudes;
+    private final int[] levelOrders;
+    private final long[][] tileOffsets;
+    private final int[][] tileLengths;
+    private final int[][] tileCounts;
+
+    // Tuiles lues, par ordre d'utilisation
+    private final Map<Long, ByteBuffer> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long selectionBytes;
+
+    // Dernière sélection, réutilisée tant que les tuiles et la magnitude
+    // limite ne changent pas
+    private long[] selectedTiles = new long[0];
+    private double selectedMagnitude = Double.NaN;
+    private StarCatalogue selection;
+
+    private TiledCatalogue(FileChannel channel, long memoryBudget,
+            float[] levelMagnitudes, int[] levelOrders, long[][] tileOffsets,
+            int[][] tileLengths, int[][] tileCounts) {
+        this.channel = channel;
+        this.memoryBudget = memoryBudget;
+        this.levelMagnitudes = levelMagnitudes;
+        this.levelOrders = levelOrders;
+        this.tileOffsets = tileOffsets;
+        this.tileLengths = tileLengths;
+        this.tileCounts = tileCounts;
+    }
+
+    /**
+     * Ouvre le catalogue tuilé donné. Seuls l'en-tête et la table des tuiles
+     * sont lus.
+     *
+     * @param path
+     *            chemin du fichier
+     * @param memoryBudget
+     *            taille maximale, en octets, des tuiles conservées en mémoire
+     *            et de la dernière sélection
+     * @return le catalogue
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas
+     *             un catalogue tuilé valide
+     * @throws IllegalArgumentException
+     *             si le budget mémoire n'est pas strictement positif
+     */
+    public static TiledCatalogue open(Path path, long memoryBudget)
+            throws IOException {
+        Preconditions.checkArgument(memoryBudget > 0);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), headerBytes(0)));
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException();
+
+            int levelCount = header.getInt();
+            if (levelCount <= 0)
+                throw new IOException();
+            float[] levelMagnitudes = new float[levelCount];
+            int[] levelOrders = new int[levelCount];
+            long tableSize = 0;
+
+            ByteBuffer levels = channel.map(FileChannel.MapMode.READ_ONLY,
+                    headerBytes(0), headerBytes(levelCount) - headerBytes(0));
+            for (int l = 0; l < levelCount; ++l) {
+                levelMagnitudes[l] = levels.getFloat();
+                levelOrders[l] = levels.getInt();
+                if (levelOrders[l] < 0 || levelOrders[l] > SkyPixelIndex.MAX_ORDER)
+                    throw new IOException();
+                tableSize += (long) SkyPixelIndex.pixelCount(levelOrders[l])
+                        * TILE_ENTRY_BYTES;
+            }
+
+            long[][] tileOffsets = new long[levelCount][];
+            int[][] tileLengths = new int[levelCount][];
+            int[][] tileCounts = new int[levelCount][];
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY,
+                    headerBytes(levelCount), tableSize);
+            for (int l = 0; l < levelCount; ++l) {
+                int pixels = SkyPixelIndex.pixelCount(levelOrders[l]);
+                tileOffsets[l] = new long[pixels];
+                tileLengths[l] = new int[pixels];
+                tileCounts[l] = new int[pixels];
+                for (int p = 0; p < pixels; ++p) {
+                    tileOffsets[l][p] = table.getLong();
+                    tileLengths[l][p] = table.getInt();
+                    tileCounts[l][p] = table.getInt();
+                    if (tileOffsets[l][p] + tileLengths[l][p] > channel.size())
+                        throw new IOException();
+                }
+            }
+            return new TiledCatalogue(channel, memoryBudget, levelMagnitudes,
+                    levelOrders, tileOffsets, tileLengths, tileCounts);
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /**
+     * Retourne la taille de l'en-tête d'un catalogue au nombre de niveaux
+     * donné
+     */
+    static long headerBytes(int levelCount) {
+        return 3 * Integer.BYTES
+                + (long) levelCount * (Float.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Retourne le catalogue des étoiles de magnitude inférieure ou égale à la
+     * magnitude limite situées dans les tuiles qui intersectent le cône
+     * donné. Les tuiles des niveaux les plus brillants sont chargées en
+     * premier et, dans chaque niveau, les plus proches du centre du cône ;
+     * dès qu'une tuile, avec les étoiles qu'elle ajoute au catalogue
+     * retourné, ne tient plus dans le budget mémoire, elle et toutes les
+     * suivantes sont ignorées. Si les tuiles retenues et la magnitude limite sont celles de
+     * l'appel précédent, le même catalogue est retourné.
+     *
+     * @param center
+     *            centre du cône
+     * @param radius
+     *            rayon angulaire du cône, en radians
+     * @param limitingMagnitude
+     *            magnitude limite
+     * @return le catalogue des étoiles sélectionnées, au stockage COMPACT,
+     *         sans astérismes ni limites de constellations
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si une tuile est
+     *             invalide
+     */
+    public synchronized StarCatalogue select(EquatorialCoordinates center,
+            double radius, double limitingMagnitude) throws IOException {
+
+        long[] keys = new long[16];
+        int keyCount = 0;
+        long bytes = 0;
+        long reserved = 0;
+
+        levels: for (int l = 0; l < levelMagnitudes.length; ++l) {
+            if (l > 0 && levelMagnitudes[l - 1] >= limitingMagnitude)
+                break;
+
+            for (int p : SkyPixelIndex.pixelsInConeByDistance(levelOrders[l],
+                    center.ra(), center.dec(), radius)) {
+                if (tileCounts[l][p] == 0)
+                    continue;
+                long starBytes = (long) SELECTED_STAR_BYTES * tileCounts[l][p];
+                if (bytes + tileLengths[l][p] + starBytes > memoryBudget)
+                    break levels;
+
+                if (keyCount == keys.length)
+                    keys = Arrays.copyOf(keys, 2 * keyCount);
+                keys[keyCount++] = (long) l << Integer.SIZE | p;
+                bytes += tileLengths[l][p] + starBytes;
+                reserved += starBytes;
+            }
+        }
+        keys = Arrays.copyOf(keys, keyCount);
+
+        if (selection != null && Arrays.equals(keys, selectedTiles)
+                && limitingMagnitude == selectedMagnitude)
+            return selection;
+
+        // L'ancienne sélection est abandonnée avant que la nouvelle ne
+        // soit construite
+        selection = null;
+        selectionBytes = 0;
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try {
+            for (long key : keys) {
+                ByteBuffer tile = tile(key, reserved).duplicate();
+                int count = tileCounts[(int) (key >>> Integer.SIZE)][(int) key];
+                for (int i = 0; i < count; ++i) {
+                    Star star = BinaryCatalogueLoader.readStar(tile);
+                    if (star.magnitude() <= limitingMagnitude)
+                        builder.addStar(star);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+
+        selectedTiles = keys;
+        selectedMagnitude = limitingMagnitude;
+        selection = builder.build(StarCatalogue.Storage.COMPACT);
+        selectionBytes = (long) SELECTED_STAR_BYTES * selection.starCount();
+
+        // Les tuiles de la sélection, les plus récemment utilisées, sont
+        // conservées
+        int kept = 0;
+        for (long key : keys) {
+            if (tiles.containsKey(key))
+                ++kept;
+        }
+        trim(selectionBytes, kept);
+        return selection;
+    }
+
+    /**
+     * Retourne le catalogue des étoiles de magnitude inférieure ou égale à la
+     * magnitude limite situées dans les tuiles qui intersectent le champ de
+     * vue de la projection donnée, comme
+     * {@link #select(EquatorialCoordinates, double, double)}.
+     *
+     * @param when
+     *            instant d'observation
+     * @param where
+     *            lieu d'observation
+     * @param projection
+     *            projection, dont le centre est celui du champ de vue
+     * @param radius
+     *            rayon angulaire du champ de vue, en radians, c.-à-d. la
+     *            distance angulaire entre son centre et ses coins
+     * @param limitingMagnitude
+     *            magnitude limite
+     * @return le catalogue des étoiles sélectionnées
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie, ou si une tuile est
+     *             invalide
+     */
+    public StarCatalogue select(ZonedDateTime when, GeographicCoordinates where,
+            StereographicProjection projection, double radius,
+            double limitingMagnitude) throws IOException {
+
+        HorizontalCoordinates center = projection
+                .inverseApply(CartesianCoordinates.of(0, 0));
+        double sinLat = Math.sin(where.lat());
+        double cosLat = Math.cos(where.lat());
+        double sinAlt = Math.sin(center.alt());
+        double cosAlt = Math.cos(center.alt());
+
+        // Conversion inverse de EquatorialToHorizontalConversion, de forme
+        // identique en échangeant azimut et angle horaire
+        double dec = Math.asin(sinAlt * sinLat
+                + cosAlt * cosLat * Math.cos(center.az()));
+        double hourAngle = Math.atan2(-cosAlt * cosLat * Math.sin(center.az()),
+                sinAlt - sinLat * Math.sin(dec));
+        double ra = Angle.normalizePositive(
+                SiderealTime.local(when, where) - hourAngle);
+
+        return select(EquatorialCoordinates.of(ra, dec), radius,
+                limitingMagnitude);
+    }
+
+    /**
+     * Retourne la tuile de clé donnée, en la lisant et en l'ajoutant au cache
+     * si elle n'y est pas, puis en réduisant le cache au budget, dont le
+     * nombre d'octets donné est réservé à la sélection
+     */
+    private ByteBuffer tile(long key, long reserved) throws IOException {
+        ByteBuffer tile = tiles.get(key);
+        if (tile != null)
+            return tile;
+
+        int l = (int) (key >>> Integer.SIZE);
+        int p = (int) key;
+        tile = ByteBuffer.allocate(tileLengths[l][p]);
+        while (tile.hasRemaining()) {
+            if (channel.read(tile, tileOffsets[l][p] + tile.position()) < 0)
+                throw new IOException();
+        }
+        tile.flip();
+        tiles.put(key, tile);
+        cachedBytes += tile.capacity();
+        trim(reserved, 1);
+        return tile;
+    }
+
+    /**
+     * Retire du cache les tuiles les moins récemment utilisées, hormis les
+     * kept plus récemment utilisées, tant que le budget, dont le nombre
+     * d'octets donné est réservé à la sélection, est dépassé
+     */
+    private void trim(long reserved, int kept) {
+        Iterator<ByteBuffer> eldest = tiles.values().iterator();
+        int removable = tiles.size() - kept;
+        while (removable-- > 0 && cachedBytes + reserved > memoryBudget) {
+            cachedBytes -= eldest.next().capacity();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return le nombre de niveaux de magnitude
+     */
+    public int levelCount() {
+        return levelMagnitudes.length;
+    }
+
+    /**
+     * Retourne la magnitude limite du niveau donné, infinie pour le dernier
+     *
+     * @param level
+     *            niveau
+     * @return la magnitude limite du niveau
+     * @throws IndexOutOfBoundsException
+     *             si le niveau n'existe pas
+     */
+    public double levelMagnitude(int level) {
+        return levelMagnitudes[level];
+    }
+
+    /**
+     * @return le nombre total d'étoiles du catalogue
+     */
+    public long starCount() {
+        long count = 0;
+        for (int[] counts : tileCounts) {
+            for (int c : counts)
+                count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @return le budget mémoire, en octets
+     */
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return la taille totale, en octets, des tuiles du cache
+     */
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return la taille, en octets, des tuiles du cache et de la dernière
+     *         sélection, à comparer au budget mémoire
+     */
+    public synchronized long usedBytes() {
+        return cachedBytes + selectionBytes;
+    }
+
+    /**
+     * Ferme le fichier et vide le cache
+     *
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        tiles.clear();
+        cachedBytes = 0;
+        selection = null;
+        selectionBytes = 0;
+        channel.close();
+    }
+}
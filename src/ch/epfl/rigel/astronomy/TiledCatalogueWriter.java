@@ -0,0 +1,227 @@
+package ch.epfl.rigel.astronomy;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ch.epfl.rigel.Preconditions;
+
+/**
+ * Convertisseur produisant un catalogue découpé en tuiles, lisible par
+ * {@link TiledCatalogue}.
+ *
+ * Les étoiles sont d'abord réparties en niveaux de magnitude, puis, à
+ * l'intérieur de chaque niveau, en tuiles correspondant aux pixels HEALPix
+ * d'un niveau de découpage choisi pour que chaque tuile contienne au plus
+ * quelques milliers d'étoiles en moyenne : les niveaux brillants, peu
+ * peuplés, sont découpés en peu de tuiles, les niveaux faibles en beaucoup.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class TiledCatalogueWriter {
+
+    /**
+     * Magnitudes limites par défaut des niveaux, le dernier niveau contenant
+     * toutes les étoiles plus faibles
+     */
+    public final static double[] DEFAULT_LEVEL_MAGNITUDES = {4, 7, 10, 13};
+
+    private final static int TILE_STARS = 4096;
+    private final static int MAX_TILE_ORDER = 8;
+
+    private TiledCatalogueWriter() {
+    }
+
+    /**
+     * Écrit les étoiles données au format tuilé dans le fichier donné
+     *
+     * @param stars
+     *            étoiles
+     * @param path
+     *            chemin du fichier
+     * @param levelMagnitudes
+     *            magnitudes limites des niveaux, dans l'ordre strictement
+     *            croissant ; un dernier niveau contient les étoiles plus
+     *            faibles que la dernière
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException
+     *             si les magnitudes ne sont pas strictement croissantes, ou si
+     *             le nom d'une étoile dépasse 65535 octets
+     */
+    public static void write(List<Star> stars, Path path,
+            double... levelMagnitudes) throws IOException {
+        write(action -> stars.forEach(action), path, levelMagnitudes);
+    }
+
+    /**
+     * Écrit les étoiles du catalogue HYG donné au format tuilé dans le
+     * fichier donné, sans les conserver en mémoire : le catalogue est lu
+     * trois fois
+     *
+     * @param hyg
+     *            source du catalogue HYG, au format CSV
+     * @param path
+     *            chemin du fichier
+     * @param levelMagnitudes
+     *            magnitudes limites des niveaux, comme pour
+     *            {@link #write(List, Path, double...)}
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException
+     *             si les magnitudes ne sont pas strictement croissantes, ou si
+     *             le nom d'une étoile dépasse 65535 octets
+     */
+    public static void write(CatalogueLoadingStage.Source hyg, Path path,
+            double... levelMagnitudes) throws IOException {
+        write(action -> {
+            try (InputStream inputStream = hyg.open()) {
+                HygDatabaseLoader.forEachStar(inputStream, action);
+            }
+        }, path, levelMagnitudes);
+    }
+
+    /**
+     * Écrit les étoiles parcourues au format tuilé en trois passes : la
+     * première compte les étoiles de chaque niveau pour en choisir le
+     * découpage, la deuxième mesure chaque tuile pour en écrire la table, la
+     * troisième écrit chaque étoile à la suite de sa tuile. Seules la table
+     * et un enregistrement sont en mémoire.
+     */
+    private static void write(Stars stars, Path path, double[] levelMagnitudes)
+            throws IOException {
+
+        for (int i = 1; i < levelMagnitudes.length; ++i)
+            Preconditions.checkArgument(
+                    levelMagnitudes[i - 1] < levelMagnitudes[i]);
+
+        int levelCount = levelMagnitudes.length + 1;
+        int[] levelSizes = new int[levelCount];
+        stars.forEach(star -> ++levelSizes[level(star.magnitude(), levelMagnitudes)]);
+
+        int[] orders = new int[levelCount];
+        int[][] tileLengths = new int[levelCount][];
+        int[][] tileCounts = new int[levelCount][];
+        for (int l = 0; l < levelCount; ++l) {
+            orders[l] = tileOrder(levelSizes[l]);
+            tileLengths[l] = new int[SkyPixelIndex.pixelCount(orders[l])];
+            tileCounts[l] = new int[SkyPixelIndex.pixelCount(orders[l])];
+        }
+        stars.forEach(star -> {
+            int l = level(star.magnitude(), levelMagnitudes);
+            int p = pixelOf(star, orders[l]);
+            tileLengths[l][p] += BinaryCatalogueWriter.recordBytes(star);
+            ++tileCounts[l][p];
+        });
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel)));
+            out.writeInt(TiledCatalogue.MAGIC);
+            out.writeInt(TiledCatalogue.VERSION);
+            out.writeInt(levelCount);
+
+            long tableSize = 0;
+            for (int l = 0; l < levelCount; ++l) {
+                out.writeFloat(l < levelMagnitudes.length
+                        ? (float) levelMagnitudes[l]
+                        : Float.POSITIVE_INFINITY);
+                out.writeInt(orders[l]);
+                tableSize += (long) tileLengths[l].length
+                        * TiledCatalogue.TILE_ENTRY_BYTES;
+            }
+
+            // La table des tuiles, niveau par niveau, précède leur contenu ;
+            // la position de chaque tuile devient celle de sa prochaine étoile
+            long[][] positions = new long[levelCount][];
+            long offset = TiledCatalogue.headerBytes(levelCount) + tableSize;
+            for (int l = 0; l < levelCount; ++l) {
+                positions[l] = new long[tileLengths[l].length];
+                for (int p = 0; p < tileLengths[l].length; ++p) {
+                    out.writeLong(offset);
+                    out.writeInt(tileLengths[l][p]);
+                    out.writeInt(tileCounts[l][p]);
+                    positions[l][p] = offset;
+                    offset += tileLengths[l][p];
+                }
+            }
+            out.flush();
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            stars.forEach(star -> {
+                int l = level(star.magnitude(), levelMagnitudes);
+                int p = pixelOf(star, orders[l]);
+                record.reset();
+                try {
+                    BinaryCatalogueWriter.writeStar(recordOut, star);
+                    ByteBuffer bytes = ByteBuffer.wrap(record.toByteArray());
+                    while (bytes.hasRemaining())
+                        positions[l][p] += channel.write(bytes, positions[l][p]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parcours des étoiles à écrire, qui peut être répété
+     */
+    @FunctionalInterface
+    private interface Stars {
+        void forEach(Consumer<Star> action) throws IOException;
+    }
+
+    private static int pixelOf(Star star, int order) {
+        return SkyPixelIndex.pixelOf(order, star.equatorialPos().ra(),
+                star.equatorialPos().dec());
+    }
+
+    private static int level(double magnitude, double[] levelMagnitudes) {
+        int l = 0;
+        while (l < levelMagnitudes.length && magnitude > levelMagnitudes[l])
+            ++l;
+        return l;
+    }
+
+    private static int tileOrder(int starCount) {
+        int order = 0;
+        while (order < MAX_TILE_ORDER
+                && (long) SkyPixelIndex.pixelCount(order) * TILE_STARS < starCount)
+            ++order;
+        return order;
+    }
+
+    /**
+     * Convertit un catalogue HYG au format CSV en catalogue tuilé, découpé
+     * selon les niveaux par défaut, sans charger le catalogue en mémoire
+     *
+     * @param args
+     *            le chemin du fichier CSV puis celui du fichier tuilé à
+     *            produire
+     * @throws IOException
+     *             en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path hyg = Path.of(args[0]);
+        write(() -> Files.newInputStream(hyg), Path.of(args[1]),
+                DEFAULT_LEVEL_MAGNITUDES);
+    }
+}
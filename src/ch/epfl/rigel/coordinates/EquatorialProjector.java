@@ -0,0 +1,121 @@
+package ch.epfl.rigel.coordinates;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+/**
+ * Composition d'un changement de coordonnées équatoriales vers horizontales
+ * et d'une projection stéréographique, qui projette directement une position
+ * équatoriale dans le plan.
+ *
+ * Le changement de coordonnées, qui ne dépend que du temps sidéral local et
+ * de la latitude, suivi de la rotation amenant le centre de la projection
+ * au pôle, est exprimé par une unique matrice de rotation 3×3, calculée une
+ * fois pour toutes. Projeter une position revient alors à multiplier son
+ * vecteur unitaire équatorial par cette matrice, ce qui donne un vecteur
+ * (u, v, w) dont la projection stéréographique est simplement
+ * (u / (1 + w), v / (1 + w)).
+ *
+ * Contrairement à l'application successive des deux fonctions, aucune
+ * instance intermédiaire n'est créée, et aucune fonction trigonométrique
+ * n'est évaluée lorsque le vecteur unitaire est connu.
+ *
+ * @author Nathan Chettrit (313002)
+ * @author Yanis Seddik (310086)
+ */
+public final class EquatorialProjector {
+
+    // Lignes de la matrice donnant u, v et w
+    private final double uX;
+    private final double uY;
+    private final double uZ;
+    private final double vX;
+    private final double vY;
+    private final double vZ;
+    private final double wX;
+    private final double wY;
+    private final double wZ;
+
+    /**
+     * Construit la composition du changement de coordonnées et de la
+     * projection donnés
+     *
+     * @param conversion
+     *            changement de coordonnées équatoriales vers horizontales
+     * @param projection
+     *            projection stéréographique
+     */
+    public EquatorialProjector(EquatorialToHorizontalConversion conversion,
+            StereographicProjection projection) {
+        double sinLst = sin(conversion.localSiderealTime());
+        double cosLst = cos(conversion.localSiderealTime());
+        double sinLat = conversion.sinLatitude();
+        double cosLat = conversion.cosLatitude();
+        double sinAzCenter = sin(projection.azCenter());
+        double cosAzCenter = cos(projection.azCenter());
+        double sinAltCenter = projection.sinAltCenter();
+        double cosAltCenter = projection.cosAltCenter();
+
+        // Repère horizontal : vers l'est, vers le nord et vers le zénith
+        double eX = -sinLst, eY = cosLst, eZ = 0;
+        double nX = -sinLat * cosLst, nY = -sinLat * sinLst, nZ = cosLat;
+        double zX = cosLat * cosLst, zY = cosLat * sinLst, zZ = sinLat;
+
+        // Horizontale dans la direction de l'azimut du centre
+        double cX = nX * cosAzCenter + eX * sinAzCenter;
+        double cY = nY * cosAzCenter + eY * sinAzCenter;
+        double cZ = nZ * cosAzCenter + eZ * sinAzCenter;
+
+        this.uX = eX * cosAzCenter - nX * sinAzCenter;
+        this.uY = eY * cosAzCenter - nY * sinAzCenter;
+        this.uZ = eZ * cosAzCenter - nZ * sinAzCenter;
+        this.vX = zX * cosAltCenter - cX * sinAltCenter;
+        this.vY = zY * cosAltCenter - cY * sinAltCenter;
+        this.vZ = zZ * cosAltCenter - cZ * sinAltCenter;
+        this.wX = zX * sinAltCenter + cX * cosAltCenter;
+        this.wY = zY * sinAltCenter + cY * cosAltCenter;
+        this.wZ = zZ * sinAltCenter + cZ * cosAltCenter;
+    }
+
+    /**
+     * Projette la position équatoriale donnée, et range ses coordonnées x et
+     * y aux index offset et offset + 1 du tableau donné
+     *
+     * @param ra
+     *            ascension droite, en radians
+     * @param dec
+     *            déclinaison, en radians
+     * @param output
+     *            tableau de sortie
+     * @param offset
+     *            index de la coordonnée x dans le tableau de sortie
+     */
+    public void project(double ra, double dec, double[] output, int offset) {
+        double cosDec = cos(dec);
+        projectUnit(cosDec * cos(ra), cosDec * sin(ra), sin(dec), output,
+                offset);
+    }
+
+    /**
+     * Projette la position équatoriale de vecteur unitaire (x, y, z) —
+     * c.-à-d. (cos δ cos α, cos δ sin α, sin δ) — et range ses coordonnées x
+     * et y aux index offset et offset + 1 du tableau donné
+     *
+     * @param x
+     *            première coordonnée du vecteur unitaire
+     * @param y
+     *            deuxième coordonnée du vecteur unitaire
+     * @param z
+     *            troisième coordonnée du vecteur unitaire
+     * @param output
+     *            tableau de sortie
+     * @param offset
+     *            index de la coordonnée x dans le tableau de sortie
+     */
+    public void projectUnit(double x, double y, double z, double[] output,
+            int offset) {
+        double d = 1 / (1 + wX * x + wY * y + wZ * z);
+        output[offset] = d * (uX * x + uY * y + uZ * z);
+        output[offset + 1] = d * (vX * x + vY * y + vZ * z);
+    }
+}
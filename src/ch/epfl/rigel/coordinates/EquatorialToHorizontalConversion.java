@@ -54,10 +54,24 @@ public final class EquatorialToHorizontalConversion
      */
     @Override
     public HorizontalCoordinates apply(EquatorialCoordinates equ) {
-        double sinδ = sin(equ.dec());
-        double cosδ = cos(equ.dec());
+        return apply(equ.ra(), equ.dec());
+    }
+
+    /**
+     * retourne les coordonnées horizontales correspondant à l'ascension
+     * droite et à la déclinaison données
+     *
+     * @param ra
+     *            ascension droite en radians
+     * @param dec
+     *            déclinaison en radians
+     * @return retourne les coordonnées horizontales correspondantes
+     */
+    public HorizontalCoordinates apply(double ra, double dec) {
+        double sinδ = sin(dec);
+        double cosδ = cos(dec);
 
-        double hourAngle = localSideralTime - equ.ra();
+        double hourAngle = localSideralTime - ra;
         double cosHourAngle = cos(hourAngle);
         double sinHourAngle = sin(hourAngle);
 
@@ -68,6 +82,27 @@ public final class EquatorialToHorizontalConversion
         return HorizontalCoordinates.of(A, h);
     }
 
+    /**
+     * @return le temps sidéral local, en radians
+     */
+    double localSiderealTime() {
+        return localSideralTime;
+    }
+
+    /**
+     * @return le cosinus de la latitude du lieu
+     */
+    double cosLatitude() {
+        return cosϕ;
+    }
+
+    /**
+     * @return le sinus de la latitude du lieu
+     */
+    double sinLatitude() {
+        return sinϕ;
+    }
+
     /**
      * @throws UnsupportedOperationException
      */
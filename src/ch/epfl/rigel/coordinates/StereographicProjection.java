@@ -154,6 +154,27 @@ public final class StereographicProjection
         return CartesianCoordinates.of(x, y);
     }
 
+    /**
+     * @return l'azimut du centre de la projection
+     */
+    double azCenter() {
+        return azCenter;
+    }
+
+    /**
+     * @return le cosinus de la hauteur du centre de la projection
+     */
+    double cosAltCenter() {
+        return cosAltCenter;
+    }
+
+    /**
+     * @return le sinus de la hauteur du centre de la projection
+     */
+    double sinAltCenter() {
+        return sinAltCenter;
+    }
+
     @Override
     public String toString() {
         return String.format(Locale.ROOT,
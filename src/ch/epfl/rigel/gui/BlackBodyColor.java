@@ -10,12 +10,15 @@ import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Couleur d'un corps noir
  *
+ * Les couleurs du fichier de référence, données par pas de 100 K, sont
+ * stockées dans une table dense : l'index d'une température dans cette
+ * palette peut être calculé une fois pour toutes, et la couleur obtenue
+ * ensuite par un simple accès au tableau.
+ *
  * @author Nathan Chettrit (313002)
  * @author Yanis Seddik (310086)
  */
@@ -27,10 +30,14 @@ public final class BlackBodyColor {
 
     private final static Charset c = StandardCharsets.US_ASCII;
 
+    private final static int MIN_TEMPERATURE = 1000;
+    private final static int MAX_TEMPERATURE = 40000;
+    private final static int STEP = 100;
+
     private final static  ClosedInterval INTERVAL_TEMPERATURE = ClosedInterval
-            .of(1000, 40000);
+            .of(MIN_TEMPERATURE, MAX_TEMPERATURE);
 
-    private final static Map<Integer, Color> colorMap = map();
+    private final static Color[] colors = table();
 
     /**
      * retourne la couleur correspondante à une température exprimée en degrés
@@ -42,33 +49,52 @@ public final class BlackBodyColor {
      * @throws IllegalArgumentException
      *             si la température n'est pas dans la plage couverte par le
      *             fichier de référence
-     * @throws IOException
      */
     public static Color colorForTemperature(int kelvTemp) throws IllegalArgumentException {
+        return colorForIndex(indexForTemperature(kelvTemp));
+    }
 
+    /**
+     * retourne l'index dans la palette de la couleur correspondant à une
+     * température exprimée en degrés Kelvin, arrondie à la centaine la plus
+     * proche
+     *
+     * @param kelvTemp
+     *            la température
+     * @return l'index de la couleur
+     * @throws IllegalArgumentException
+     *             si la température n'est pas dans la plage couverte par le
+     *             fichier de référence
+     */
+    public static int indexForTemperature(int kelvTemp) {
         Preconditions.checkInInterval(INTERVAL_TEMPERATURE, kelvTemp);
+        return (kelvTemp - MIN_TEMPERATURE + STEP / 2) / STEP;
+    }
 
-        while (kelvTemp % 100 != 0){
-            if( kelvTemp % 100 >= 50){
-                kelvTemp += 1;
-            }else{
-                kelvTemp -= 1;
-            }
-        }
-        return colorMap.get(kelvTemp);
+    /**
+     * retourne la couleur d'index donné dans la palette
+     *
+     * @param index
+     *            l'index, tel que retourné par indexForTemperature
+     * @return la couleur
+     * @throws ArrayIndexOutOfBoundsException
+     *             si l'index n'est pas celui d'une couleur de la palette
+     */
+    public static Color colorForIndex(int index) {
+        return colors[index];
     }
 
     /**
-     *  crée une map reliant les températures à leur couleur
+     *  crée la table des couleurs, indexée par pas de 100 K depuis 1000 K
      *
-     * @return la map
+     * @return la table
      */
-    private static Map<Integer, Color> map() {
+    private static Color[] table() {
 
         BufferedReader br = new BufferedReader(
                 new InputStreamReader(BlackBodyColor.class.getResourceAsStream(BBR_CATALOGUE_NAME), c));
 
-        Map<Integer, Color> map = new HashMap<>();
+        Color[] table = new Color[(MAX_TEMPERATURE - MIN_TEMPERATURE) / STEP + 1];
 
         String str;
         try {
@@ -77,17 +103,14 @@ public final class BlackBodyColor {
                 if (!(str.substring(0, 1).equals("#"))
                         && str.substring(10, 15).equals("10deg")) {
 
-                    if(str.charAt(1) == ' '){
-                        map.put(Integer.valueOf(str.substring(2, 6)), Color.web(str.substring(80, 87)));
-                    }else{
-                        map.put(Integer.valueOf(str.substring(1, 6)), Color.web(str.substring(80, 87)));
-                    }
+                    int temperature = Integer.parseInt(str.substring(1, 6).trim());
+                    table[(temperature - MIN_TEMPERATURE) / STEP] = Color.web(str.substring(80, 87));
                 }
             }
             br.close();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        return map;
+        return table;
     }
 }
\ No newline at end of file
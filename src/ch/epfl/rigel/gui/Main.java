@@ -2,11 +2,15 @@ package ch.epfl.rigel.gui;
 
 import ch.epfl.rigel.astronomy.AsterismLoader;
 import ch.epfl.rigel.astronomy.BoundariesLoader;
+import ch.epfl.rigel.astronomy.CatalogueLoadingStage;
+import ch.epfl.rigel.astronomy.CatalogueSnapshot;
 import ch.epfl.rigel.astronomy.HygDatabaseLoader;
+import ch.epfl.rigel.astronomy.ProgressiveCatalogueLoader;
 import ch.epfl.rigel.astronomy.StarCatalogue;
 import ch.epfl.rigel.coordinates.GeographicCoordinates;
 import ch.epfl.rigel.coordinates.HorizontalCoordinates;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -23,8 +27,14 @@ import javafx.stage.Stage;
 import javafx.util.converter.LocalTimeStringConverter;
 import javafx.util.converter.NumberStringConverter;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -32,6 +42,12 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.UnaryOperator;
 
 import static javafx.beans.binding.Bindings.select;
@@ -46,8 +62,18 @@ import static javafx.beans.binding.Bindings.when;
 public class Main extends Application {
 
     private final static String HYG_STRING = "/hygdata_v3.csv";
+    // Produit à partir du catalogue CSV par BinaryCatalogueWriter (voir sa
+    // documentation), à régénérer à chaque modification de celui-ci ;
+    // BinaryCatalogueLoaderTest vérifie qu'il lui correspond toujours
+    private final static String HYG_BINARY_STRING = "/hygdata_v3.bin";
     private final static String ASTERISM_STRING = "/asterisms.txt";
     private final static String BOUNDARIES_STRING = "/bound_20.dat";
+    private final static String COMPRESSED_SUFFIX = ".gz";
+
+    private final static Path SNAPSHOT_PATH =
+            Path.of(System.getProperty("user.home"), ".rigel", "catalogue.snapshot");
+
+    private final static double FIRST_TIER_MAGNITUDE = 4;
 
     private final static double OBSERVER_DEGREES_LONGITUDE = 6.57;
     private final static double OBSERVER_DEGREES_LATITUDE = 46.52;
@@ -61,6 +87,9 @@ public class Main extends Application {
     private final static double WINDOW_MIN_HEIGHT = 600;
 
     private final static String WINDOW_TITLE = "Rigel";
+    private final static String LOADING_ERROR_TEXT =
+            "Le catalogue n'a pas pu être chargé : %s";
+    private final static String MISSING_RESOURCE_TEXT = "ressource du catalogue introuvable";
 
     private final static String RESET_STRING = "\uf0e2";
     private final static String PLAY_STRING = "\uf04b";
@@ -82,67 +111,200 @@ public class Main extends Application {
         return getClass().getResourceAsStream(resourceName);
     }
 
-    @Override
-    public void start(Stage primaryStage) throws IOException {
+    /**
+     * Signale à l'utilisateur l'échec du chargement du catalogue
+     *
+     * @param cause cause de l'échec
+     */
+    private void showLoadingError(Throwable cause) {
+        Alert alert = new Alert(Alert.AlertType.ERROR,
+                String.format(LOADING_ERROR_TEXT, cause.getMessage()));
+        alert.setHeaderText(null);
+        alert.setTitle(WINDOW_TITLE);
+        alert.show();
+    }
 
-        StarCatalogue.Builder builder = new StarCatalogue.Builder();
-        try (InputStream as = resourceStream(BOUNDARIES_STRING)) {
-            builder.loadFrom(as, BoundariesLoader.INSTANCE);
+    /**
+     * Retourne le chemin de la ressource donnée si elle est un fichier du
+     * système de fichiers — et non, par exemple, une entrée d'archive JAR —,
+     * null sinon
+     */
+    private Path resourcePath(String resourceName) {
+        URL url = getClass().getResource(resourceName);
+        if (url == null || !"file".equals(url.getProtocol()))
+            return null;
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
         }
-        try (InputStream hs = resourceStream(HYG_STRING)) {
-            builder.loadFrom(hs, HygDatabaseLoader.INSTANCE);
+    }
+
+    /**
+     * Retourne la source de la ressource donnée ou, à défaut, de sa version
+     * compressée (suffixe .gz), que les chargeurs décompressent eux-mêmes ;
+     * null si aucune n'existe. Une ressource qui est un fichier est ouverte
+     * comme tel, pour pouvoir être projetée en mémoire plutôt que copiée.
+     */
+    private CatalogueLoadingStage.Source resourceSource(String resourceName) {
+        String name = getClass().getResource(resourceName) != null
+                ? resourceName
+                : resourceName + COMPRESSED_SUFFIX;
+        if (getClass().getResource(name) == null)
+            return null;
+
+        Path path = resourcePath(name);
+        return path != null
+                ? () -> new FileInputStream(path.toFile())
+                : () -> resourceStream(name);
+    }
+
+    /**
+     * Lance le chargement du catalogue : depuis l'instantané s'il correspond
+     * aux ressources courantes, sinon depuis les ressources, par paliers de
+     * magnitude publiés au fur et à mesure à l'auditeur. L'instantané est
+     * écrit une fois le catalogue complet construit.
+     *
+     * Tout le travail, y compris la lecture des ressources et de
+     * l'instantané, est fait hors du fil appelant.
+     *
+     * @param listener auditeur recevant chaque palier du catalogue
+     * @param progress auditeur recevant la fraction des ressources chargées
+     * @return le futur catalogue complet
+     */
+    private CompletableFuture<StarCatalogue> loadCatalogue(Consumer<StarCatalogue> listener,
+                                                           DoubleConsumer progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return startLoading(listener, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ForkJoinPool.commonPool()).thenCompose(catalogue -> catalogue);
+    }
+
+    /**
+     * Lit les ressources et l'instantané, puis lance le chargement du
+     * catalogue comme décrit par loadCatalogue
+     */
+    private CompletableFuture<StarCatalogue> startLoading(Consumer<StarCatalogue> listener,
+                                                          DoubleConsumer progress)
+            throws IOException {
+
+        CatalogueLoadingStage.Source boundaries = resourceSource(BOUNDARIES_STRING);
+        CatalogueLoadingStage.Source hygBinary = resourceSource(HYG_BINARY_STRING);
+        CatalogueLoadingStage.Source hyg = hygBinary != null ? hygBinary : resourceSource(HYG_STRING);
+        CatalogueLoadingStage.Source asterisms = resourceSource(ASTERISM_STRING);
+        if (boundaries == null || hyg == null || asterisms == null)
+            throw new FileNotFoundException(MISSING_RESOURCE_TEXT);
+
+        // L'empreinte est calculée sans copier les ressources en mémoire : le
+        // catalogue binaire n'est que projeté, ici puis par son chargeur
+        String key = CatalogueSnapshot.key(boundaries, hyg, asterisms);
+        try {
+            Optional<StarCatalogue> snapshot = CatalogueSnapshot.read(SNAPSHOT_PATH, key);
+            if (snapshot.isPresent()) {
+                progress.accept(1);
+                listener.accept(snapshot.get());
+                return CompletableFuture.completedFuture(snapshot.get());
+            }
+        } catch (IOException e) {
+            // instantané corrompu : il est reconstruit ci-dessous
         }
-        try (InputStream as = resourceStream(ASTERISM_STRING)) {
-            builder = builder.loadFrom(as, AsterismLoader.INSTANCE);
-            StarCatalogue catalogue = builder.build();
 
-            DateTimeBean dateTimeBean = new DateTimeBean();
-            dateTimeBean.setZonedDateTime(ZonedDateTime.now());
+        CompletableFuture<StarCatalogue> catalogue;
+        if (hygBinary != null) {
+            // Le catalogue binaire est rangé par magnitude : les étoiles
+            // brillantes sont affichées pendant que les autres sont lues
+            catalogue = new ProgressiveCatalogueLoader(boundaries, hygBinary, asterisms)
+                    .load(ForkJoinPool.commonPool(), listener, progress, FIRST_TIER_MAGNITUDE);
+        } else {
+            // Sans catalogue binaire, le CSV est analysé en parallèle, mais
+            // le catalogue n'est publié qu'une fois complet
+            catalogue = new CatalogueLoadingStage()
+                    .add(BOUNDARIES_STRING, boundaries, BoundariesLoader.INSTANCE)
+                    .add(HYG_STRING, hyg, HygDatabaseLoader.PARALLEL)
+                    .add(ASTERISM_STRING, asterisms, AsterismLoader.INSTANCE, HYG_STRING)
+                    .run(ForkJoinPool.commonPool(), progress)
+                    .thenApply(StarCatalogue::spatiallyOrdered)
+                    .thenApply(c -> {
+                        listener.accept(c);
+                        return c;
+                    });
+        }
 
-            ObserverLocationBean observerLocationBean =
-                    new ObserverLocationBean();
-            observerLocationBean.setCoordinates(
-                    GeographicCoordinates.ofDeg(OBSERVER_DEGREES_LONGITUDE, OBSERVER_DEGREES_LATITUDE));
+        return catalogue.thenApply(c -> {
+            try {
+                CatalogueSnapshot.write(c, key, SNAPSHOT_PATH);
+            } catch (IOException e) {
+                // l'instantané n'est qu'un cache : sans lui, le catalogue est
+                // simplement rechargé depuis les ressources au prochain
+                // lancement
+            }
+            return c;
+        });
+    }
 
-            ViewingParametersBean viewingParametersBean =
-                    new ViewingParametersBean();
-            viewingParametersBean.setCenter(
-                    HorizontalCoordinates.ofDeg(OBSERVATION_DEGREES_AZ, OBSERVATION_DEGREES_ALT));
-            viewingParametersBean.setFieldOfViewDeg(FIELD_OF_VIEW);
+    @Override
+    public void start(Stage primaryStage) throws IOException {
 
-            SkyCanvasManager canvasManager = new SkyCanvasManager(
-                    catalogue,
-                    dateTimeBean,
-                    observerLocationBean,
-                    viewingParametersBean);
+        DateTimeBean dateTimeBean = new DateTimeBean();
+        dateTimeBean.setZonedDateTime(ZonedDateTime.now());
 
+        ObserverLocationBean observerLocationBean =
+                new ObserverLocationBean();
+        observerLocationBean.setCoordinates(
+                GeographicCoordinates.ofDeg(OBSERVER_DEGREES_LONGITUDE, OBSERVER_DEGREES_LATITUDE));
 
-            Canvas sky = canvasManager.canvas();
-            Pane skyPane = new Pane();
+        ViewingParametersBean viewingParametersBean =
+                new ViewingParametersBean();
+        viewingParametersBean.setCenter(
+                HorizontalCoordinates.ofDeg(OBSERVATION_DEGREES_AZ, OBSERVATION_DEGREES_ALT));
+        viewingParametersBean.setFieldOfViewDeg(FIELD_OF_VIEW);
 
-            sky.widthProperty().bind(skyPane.widthProperty());
-            sky.heightProperty().bind(skyPane.heightProperty());
-            skyPane.getChildren().add(sky);
+        SkyCanvasManager canvasManager = new SkyCanvasManager(
+                new StarCatalogue(List.of(), List.of(), List.of()),
+                dateTimeBean,
+                observerLocationBean,
+                viewingParametersBean);
 
-            BorderPane borderPane = new BorderPane();
-            timeAnimator = new TimeAnimator(canvasManager.getDateTimeBean());
 
-            borderPane.setCenter(skyPane);
-            borderPane.setTop(controlBar(canvasManager));
-            borderPane.setBottom(infoBar(canvasManager));
+        Canvas sky = canvasManager.canvas();
+        Pane skyPane = new Pane();
 
+        sky.widthProperty().bind(skyPane.widthProperty());
+        sky.heightProperty().bind(skyPane.heightProperty());
+        skyPane.getChildren().add(sky);
 
-            primaryStage.setMinWidth(WINDOW_MIN_WIDTH);
-            primaryStage.setMinHeight(WINDOW_MIN_HEIGHT);
+        BorderPane borderPane = new BorderPane();
+        timeAnimator = new TimeAnimator(canvasManager.getDateTimeBean());
 
-            primaryStage.setY(100);
-            primaryStage.setTitle(WINDOW_TITLE);
+        borderPane.setCenter(skyPane);
+        ProgressBar loadingBar = loadingBar();
+        borderPane.setTop(controlBar(canvasManager, loadingBar));
+        borderPane.setBottom(infoBar(canvasManager));
 
-            primaryStage.setScene(new Scene(borderPane));
-            primaryStage.show();
 
-            sky.requestFocus();
-        }
+        primaryStage.setMinWidth(WINDOW_MIN_WIDTH);
+        primaryStage.setMinHeight(WINDOW_MIN_HEIGHT);
+
+        primaryStage.setY(100);
+        primaryStage.setTitle(WINDOW_TITLE);
+
+        primaryStage.setScene(new Scene(borderPane));
+        primaryStage.show();
+
+        loadCatalogue(c -> Platform.runLater(() -> canvasManager.setStarCatalogue(c)),
+                p -> Platform.runLater(() -> loadingBar.setProgress(p)))
+                .whenComplete((c, e) -> Platform.runLater(() -> loadingBar.setVisible(false)))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException
+                            && e.getCause() != null ? e.getCause() : e;
+                    Platform.runLater(() -> showLoadingError(cause));
+                    return null;
+                });
+
+        sky.requestFocus();
     }
 
 
@@ -277,7 +439,17 @@ public class Main extends Application {
         return timeAcc;
     }
 
-    private HBox controlBar(SkyCanvasManager skyCanvasManager) {
+    private ProgressBar loadingBar() {
+
+        ProgressBar loadingBar = new ProgressBar(0);
+        loadingBar.setStyle("-fx-pref-width: 120;");
+        // la barre disparaît, avec sa place, une fois le catalogue chargé
+        loadingBar.managedProperty().bind(loadingBar.visibleProperty());
+
+        return loadingBar;
+    }
+
+    private HBox controlBar(SkyCanvasManager skyCanvasManager, ProgressBar loadingBar) {
         HBox controlBar = new HBox();
         controlBar.setStyle("-fx-spacing: 4; -fx-padding: 4;");
 
@@ -286,7 +458,7 @@ public class Main extends Application {
 
         controlBar.getChildren().addAll(obsPos(skyCanvasManager), scdSeprator,
                 obsTime(skyCanvasManager), trdSeprator,
-                timeAcc(skyCanvasManager));
+                timeAcc(skyCanvasManager), loadingBar);
 
         return controlBar;
     }
@@ -4,6 +4,7 @@ import ch.epfl.rigel.astronomy.CelestialObject;
 import ch.epfl.rigel.astronomy.ObservedSky;
 import ch.epfl.rigel.astronomy.StarCatalogue;
 import ch.epfl.rigel.coordinates.CartesianCoordinates;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
 import ch.epfl.rigel.coordinates.HorizontalCoordinates;
 import ch.epfl.rigel.coordinates.StereographicProjection;
 import ch.epfl.rigel.math.Angle;
@@ -11,13 +12,17 @@ import ch.epfl.rigel.math.ClosedInterval;
 import javafx.beans.binding.Binding;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
+import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Transform;
 
+import java.time.ZonedDateTime;
+
 
 /**
  * Gestionnaire de canevas du ciel
@@ -27,8 +32,6 @@ import javafx.scene.transform.Transform;
  */
 public class SkyCanvasManager {
 
-    StarCatalogue starCatalogue;
-
     private final static double STEP_AZ = Angle.ofDeg(10);
     private final static ClosedInterval INTERVAL_FOV = ClosedInterval.of(30, 150);
 
@@ -39,6 +42,13 @@ public class SkyCanvasManager {
 
     private Canvas canvas;
 
+    // Magnitude limite des étoiles dessinées au champ de vue maximal ; elle
+    // augmente de 5 chaque fois que le champ de vue est divisé par 10. Par
+    // défaut infinie : toutes les étoiles du catalogue sont dessinées
+    private DoubleProperty limitingMagnitude =
+            new SimpleDoubleProperty(Double.POSITIVE_INFINITY);
+
+    private ObjectProperty<StarCatalogue> starCatalogue = new SimpleObjectProperty<>();
     private ObjectProperty<DateTimeBean> dateTimeBean = new SimpleObjectProperty<>();
     private ObjectProperty<ObserverLocationBean> obsLocBean = new SimpleObjectProperty<>();
     private ObjectProperty<ViewingParametersBean> viewParBean = new SimpleObjectProperty<>();
@@ -55,6 +65,8 @@ public class SkyCanvasManager {
     private final ObjectBinding<StereographicProjection> projection;
     private final ObjectBinding<Transform> planeToCanvas;
     private final ObjectBinding<ObservedSky> observedSky;
+    private ObservedSky lastObservedSky;
+    private final ObjectBinding<short[]> starPalette;
     private final ObjectBinding<HorizontalCoordinates> mouseHorizontalPosition;
 
     /**
@@ -67,7 +79,7 @@ public class SkyCanvasManager {
      */
     public SkyCanvasManager(StarCatalogue starCatalogue, DateTimeBean dateTimeBean,
                             ObserverLocationBean obsLocBean, ViewingParametersBean viewParBean) {
-        this.starCatalogue = starCatalogue;
+        setStarCatalogue(starCatalogue);
         setDateTimeBean(dateTimeBean);
         setObsLocBean(obsLocBean);
         setViewParBean(viewParBean);
@@ -80,11 +92,23 @@ public class SkyCanvasManager {
         projection = Bindings.createObjectBinding(()
                 -> new StereographicProjection(viewParBean.getCenter()), viewParBean.centerProperty());
 
+        //ciel observé, avancé dans le temps plutôt que reconstruit lorsque seul l'instant change
         observedSky = Bindings.createObjectBinding(()
-                        -> new ObservedSky(dateTimeBean.getZonedDateTime(), obsLocBean.getCoordinates(),
-                        projection.get(), starCatalogue),
-                dateTimeBean.dateProperty(), dateTimeBean.zoneProperty(), dateTimeBean.timeProperty(),
-                obsLocBean.coordinatesProperty(), projection);
+                        -> observedSkyAt(dateTimeBean.getZonedDateTime(), obsLocBean.getCoordinates(),
+                        projection.get(), getStarCatalogue(),
+                        limitingMagnitude(getLimitingMagnitude(), viewParBean.getFieldOfViewDeg())),
+                this.starCatalogue, dateTimeBean.dateProperty(), dateTimeBean.zoneProperty(), dateTimeBean.timeProperty(),
+                obsLocBean.coordinatesProperty(), projection, viewParBean.fieldOfViewDegProperty(),
+                limitingMagnitude);
+
+        //index des couleurs des étoiles dans la palette, résolus une seule fois par catalogue
+        starPalette = Bindings.createObjectBinding(() -> {
+            StarCatalogue catalogue = getStarCatalogue();
+            short[] palette = new short[catalogue.starCount()];
+            for (int i = 0; i < palette.length; i++)
+                palette[i] = (short) BlackBodyColor.indexForTemperature(catalogue.starColorTemperature(i));
+            return palette;
+        }, this.starCatalogue);
 
         planeToCanvas = Bindings.createObjectBinding(()
                         -> Transform.affine(expansionFactor(), 0, 0, -expansionFactor(),
@@ -93,7 +117,7 @@ public class SkyCanvasManager {
 
 
         //listener sur obs et plane -> draw
-        observedSky.addListener((p, o, n) -> draw());
+        observedSky.addListener(o -> draw());
         planeToCanvas.addListener((p, o, n) -> draw());
         projection.addListener((p, o, n) -> draw());
 
@@ -173,13 +197,10 @@ public class SkyCanvasManager {
         }, planeToCanvas);
 
 
-        objectUnderMouse = Bindings.createObjectBinding(() -> {
-            if (observedSky.get().objectClosestTo(getMousePosition(), distanceMax.get()).isPresent()) {
-                return observedSky.get().objectClosestTo(getMousePosition(), distanceMax.get()).get();
-            } else {
-                return null;
-            }
-        }, mousePositionProperty(), observedSky, planeToCanvas, distanceMax);
+        objectUnderMouse = Bindings.createObjectBinding(() ->
+                        observedSky.get().objectClosestTo(getMousePosition(), distanceMax.get())
+                                .orElse(null),
+                mousePositionProperty(), observedSky, planeToCanvas, distanceMax);
 
         mouseHorizontalPosition = Bindings.createObjectBinding(() ->
                         projection.get().inverseApply(getMousePosition()),
@@ -200,7 +221,8 @@ public class SkyCanvasManager {
         skyCanvasPainter.get().drawBoundaries(observedSky.get(), projection.get(), planeToCanvas.get());
         skyCanvasPainter.get().drawSunTrace(observedSky.get(), projection.get(), planeToCanvas.get());
         skyCanvasPainter.get().drawMoonTrace(observedSky.get(), projection.get(), planeToCanvas.get());
-        skyCanvasPainter.get().drawStars(observedSky.get(), projection.get(), planeToCanvas.get());
+        skyCanvasPainter.get().drawStars(observedSky.get(), projection.get(), planeToCanvas.get(),
+                starPalette.get());
         skyCanvasPainter.get().drawPlanets(observedSky.get(), projection.get(), planeToCanvas.get());
         skyCanvasPainter.get().drawSun(observedSky.get(), projection.get(), planeToCanvas.get());
         skyCanvasPainter.get().drawMoon(observedSky.get(), projection.get(), planeToCanvas.get());
@@ -208,10 +230,79 @@ public class SkyCanvasManager {
         skyCanvasPainter.get().drawParrallels(observedSky.get(), projection.get(), planeToCanvas.get());
     }
 
+    private ObservedSky observedSkyAt(ZonedDateTime when, GeographicCoordinates where,
+                                      StereographicProjection projection, StarCatalogue catalogue,
+                                      double limitingMagnitude) {
+        ObservedSky sky = lastObservedSky;
+        if (sky != null && sky.where() == where && sky.projection() == projection
+                && sky.catalogue() == catalogue && sky.limitingMagnitude() == limitingMagnitude) {
+            sky.advanceTo(when);
+        } else {
+            sky = new ObservedSky(when, where, projection, catalogue, limitingMagnitude,
+                    ObservedSky.StarProjection.PARALLEL);
+            lastObservedSky = sky;
+        }
+        return sky;
+    }
+
+    private static double limitingMagnitude(double maxFovLimitingMagnitude, double fieldOfViewDeg) {
+        return maxFovLimitingMagnitude
+                + 5 * Math.log10(INTERVAL_FOV.high() / fieldOfViewDeg);
+    }
+
     private double expansionFactor() {
         return canvas.getWidth() / projection.get().applyToAngle(Angle.ofDeg(getViewParBean().getFieldOfViewDeg()));
     }
 
+    /**
+     * @return la magnitude limite des étoiles dessinées au champ de vue
+     * maximal, infinie par défaut
+     */
+    public double getLimitingMagnitude() {
+        return limitingMagnitude.get();
+    }
+
+    /**
+     * @return la propriété de la magnitude limite des étoiles dessinées au
+     * champ de vue maximal
+     */
+    public DoubleProperty limitingMagnitudeProperty() {
+        return limitingMagnitude;
+    }
+
+    /**
+     * Limite les étoiles dessinées à celles de magnitude inférieure ou égale
+     * à la magnitude donnée au champ de vue maximal ; la limite augmente de
+     * 5 chaque fois que le champ de vue est divisé par 10. Une magnitude
+     * infinie, la valeur par défaut, dessine toutes les étoiles.
+     *
+     * @param limitingMagnitude magnitude limite au champ de vue maximal
+     */
+    public void setLimitingMagnitude(double limitingMagnitude) {
+        this.limitingMagnitude.set(limitingMagnitude);
+    }
+
+    /**
+     * @return
+     */
+    public StarCatalogue getStarCatalogue() {
+        return starCatalogue.get();
+    }
+
+    /**
+     * @return
+     */
+    public ObjectProperty<StarCatalogue> starCatalogueProperty() {
+        return starCatalogue;
+    }
+
+    /**
+     * @param starCatalogue
+     */
+    public void setStarCatalogue(StarCatalogue starCatalogue) {
+        this.starCatalogue.set(starCatalogue);
+    }
+
     /**
      * @return
      */
@@ -18,6 +18,7 @@ import javafx.scene.shape.ArcType;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.transform.Transform;
 
+import java.nio.IntBuffer;
 import java.util.List;
 import java.util.Set;
 
@@ -39,6 +40,9 @@ public class SkyCanvasPainter {
     private boolean first = true;
     private LinearGradient linear;
 
+    // Positions des points des limites, réutilisées d'une image à l'autre
+    private double[] boundaryPositions = new double[0];
+
     private static final int PAS_PARALLEL_DEGREE = 15;
 
     /**
@@ -151,49 +155,53 @@ public class SkyCanvasPainter {
      * @param sky        ciel observé
      * @param projection projection stéreographique
      * @param transform  transform
+     * @param palette    index dans la palette de BlackBodyColor de la couleur
+     *                   de chaque étoile du catalogue
      */
-    public void drawStars(ObservedSky sky, StereographicProjection projection, Transform transform) {
+    public void drawStars(ObservedSky sky, StereographicProjection projection, Transform transform,
+                          short[] palette) {
 
         Bounds bds = canvas.getBoundsInLocal();
 
-        List<Star> starList = sky.stars();
-        Set<Asterism> asterismSet = sky.asterismSet();
         double[] starPostions = sky.starPosition();
-
-        for (Asterism asterism : asterismSet) {
-            List<Integer> list = sky.asterismIndices(asterism);
-            for (int j = 0; j < list.size() - 1; j++) {
-                Point2D ptn = transform.
-                        transform(starPostions[2 * list.get(j)], starPostions[2 * list.get(j) + 1]);
-                Point2D ptn2 = transform.
-                        transform(starPostions[2 * list.get(j + 1)], starPostions[2 * list.get(j + 1) + 1]);
-                if (bds.contains(ptn.getX(), ptn.getY()) || bds.contains(ptn2.getX(), ptn2.getY())) {
-                    ctx.beginPath();
-                    ctx.moveTo(ptn.getX(), ptn.getY());
-                    ctx.lineTo(ptn2.getX(), ptn2.getY());
-                    ctx.setStroke(Color.BLUE);
-                    ctx.setLineWidth(1);
-                    ctx.stroke();
-                }
+        StarCatalogue catalogue = sky.catalogue();
+
+        for (int s = 0; s < catalogue.asterismSegmentCount(); s++) {
+            int from = 2 * catalogue.asterismSegmentFrom(s);
+            int to = 2 * catalogue.asterismSegmentTo(s);
+            // Segment dont une étoile est au-delà de la magnitude limite
+            if (Double.isNaN(starPostions[from]) || Double.isNaN(starPostions[to]))
+                continue;
+            Point2D ptn = transform.transform(starPostions[from], starPostions[from + 1]);
+            Point2D ptn2 = transform.transform(starPostions[to], starPostions[to + 1]);
+            if (bds.contains(ptn.getX(), ptn.getY()) || bds.contains(ptn2.getX(), ptn2.getY())) {
+                ctx.beginPath();
+                ctx.moveTo(ptn.getX(), ptn.getY());
+                ctx.lineTo(ptn2.getX(), ptn2.getY());
+                ctx.setStroke(Color.BLUE);
+                ctx.setLineWidth(1);
+                ctx.stroke();
             }
         }
 
-        int i = 0;
-        for (Star star : starList) {
-            ctx.setFill(BlackBodyColor.colorForTemperature(star.colorTemperature()));
-            double diametre = diametre(star.magnitude(), projection);
+        IntBuffer visibleStars = sky.visibleStars();
+        while (visibleStars.hasRemaining()) {
+            int k = visibleStars.get();
+            int i = 2 * k;
+            double magnitude = catalogue.starMagnitude(k);
+            ctx.setFill(BlackBodyColor.colorForIndex(palette[k]));
+            double diametre = diametre(magnitude, projection);
             double r = transform.deltaTransform(0, diametre).magnitude();
             Point2D ptn = transform.transform(starPostions[i], starPostions[i + 1]);
             ctx.fillOval(ptn.getX() - r / 2, ptn.getY() - r / 2, r, r);
-            if (star.magnitude() < 1.5) {
-                String name = star.name();
+            if (magnitude < 1.5) {
+                String name = catalogue.starName(k);
                 ctx.setFill(Color.WHITE);
                 ctx.setTextBaseline(VPos.TOP);
                 ctx.setTextAlign(TextAlignment.CENTER);
                 ctx.fillText(name, ptn.getX(),
                         ptn.getY());
             }
-            i += 2;
         }
     }
 
@@ -413,21 +421,25 @@ public class SkyCanvasPainter {
 
         Bounds bds = canvas.getBoundsInLocal();
 
-        Set<Boundaries> boundariesSet = sky.boundariesSet();
-
-        for (Boundaries boundaries : boundariesSet) {
-
-            CartesianCoordinates[] boundPostions = sky.bundariesPosition(boundaries);
-
-            for (int j = 0; j < boundPostions.length - 2; j += 1) {
-                Point2D ptn = transform.
-                        transform(boundPostions[j].x(), boundPostions[j].y());
-                Point2D ptn2 = transform.
-                        transform(boundPostions[j + 1].x(), boundPostions[j + 1].y());
-                if (bds.contains(ptn.getX(), ptn.getY()) || bds.contains(ptn2.getX(), ptn2.getY())) {
+        StarCatalogue catalogue = sky.catalogue();
+        int pointCount = catalogue.boundaryPointCount();
+        if (boundaryPositions.length < 2 * pointCount)
+            boundaryPositions = new double[2 * pointCount];
+
+        sky.boundaryPositions(boundaryPositions);
+        transform.transform2DPoints(boundaryPositions, 0, boundaryPositions, 0, pointCount);
+
+        for (int b = 0; b < catalogue.boundaryCount(); b++) {
+            int end = catalogue.boundaryOffset(b + 1);
+            for (int j = catalogue.boundaryOffset(b); j < end - 2; j += 1) {
+                double x = boundaryPositions[2 * j];
+                double y = boundaryPositions[2 * j + 1];
+                double x2 = boundaryPositions[2 * j + 2];
+                double y2 = boundaryPositions[2 * j + 3];
+                if (bds.contains(x, y) || bds.contains(x2, y2)) {
                     ctx.beginPath();
-                    ctx.moveTo(ptn.getX(), ptn.getY());
-                    ctx.lineTo(ptn2.getX(), ptn2.getY());
+                    ctx.moveTo(x, y);
+                    ctx.lineTo(x2, y2);
                     ctx.setStroke(Color.GRAY);
                     ctx.setLineWidth(.5);
                     ctx.stroke();
@@ -0,0 +1,199 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCatalogueLoaderTest {
+    private static final String HYG_CATALOGUE_NAME = "/hygdata_v3.csv";
+
+    private static List<Star> hygStars() throws IOException {
+        try (InputStream hygStream = BinaryCatalogueLoaderTest.class.getResourceAsStream(HYG_CATALOGUE_NAME)) {
+            return new StarCatalogue.Builder()
+                    .loadFrom(hygStream, HygDatabaseLoader.INSTANCE)
+                    .stars();
+        }
+    }
+
+    private static List<Star> byMagnitude(List<Star> stars) {
+        List<Star> sorted = new ArrayList<>(stars);
+        sorted.sort(Comparator.comparingDouble(Star::magnitude));
+        return sorted;
+    }
+
+    private static void assertSameStars(List<Star> expected, List<Star> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Star e = expected.get(i);
+            Star a = actual.get(i);
+            assertEquals(e.hipparcosId(), a.hipparcosId());
+            assertEquals(e.name(), a.name());
+            assertEquals(e.equatorialPos().ra(), a.equatorialPos().ra());
+            assertEquals(e.equatorialPos().dec(), a.equatorialPos().dec());
+            assertEquals(e.magnitude(), a.magnitude());
+            assertEquals(e.colorTemperature(), a.colorTemperature());
+        }
+    }
+
+    @Test
+    void binaryCatalogueRoundTripsThroughStream() throws IOException {
+        List<Star> stars = hygStars();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCatalogueWriter.write(stars, out);
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(out.toByteArray()), builder);
+        assertSameStars(byMagnitude(stars), builder.stars());
+    }
+
+    @Test
+    void binaryCatalogueRoundTripsThroughMappedFile() throws IOException {
+        List<Star> stars = hygStars();
+        Path file = Files.createTempFile("rigel", ".bin");
+        try {
+            try (var out = Files.newOutputStream(file)) {
+                BinaryCatalogueWriter.write(stars, out);
+            }
+            StarCatalogue.Builder builder = new StarCatalogue.Builder();
+            BinaryCatalogueLoader.INSTANCE.load(file, builder);
+            assertSameStars(byMagnitude(stars), builder.stars());
+
+            StarCatalogue.Builder streamBuilder = new StarCatalogue.Builder();
+            try (var in = Files.newInputStream(file)) {
+                BinaryCatalogueLoader.INSTANCE.load(in, streamBuilder);
+            }
+            assertSameStars(byMagnitude(stars), streamBuilder.stars());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void gzippedBinaryCatalogueIsDecompressed() throws IOException {
+        List<Star> stars = hygStars();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            BinaryCatalogueWriter.write(stars, gz);
+        }
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(out.toByteArray()), builder);
+        assertSameStars(byMagnitude(stars), builder.stars());
+
+        Path file = Files.createTempFile("rigel", ".bin.gz");
+        try {
+            Files.write(file, out.toByteArray());
+            StarCatalogue.Builder fileBuilder = new StarCatalogue.Builder();
+            BinaryCatalogueLoader.INSTANCE.load(file, fileBuilder);
+            assertSameStars(byMagnitude(stars), fileBuilder.stars());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void nonAsciiNamesRoundTrip() throws IOException {
+        var pos = EquatorialCoordinates.of(1, 0.5);
+        List<Star> stars = List.of(
+                new Star(1, "Achernar é", pos, 0.5f, 0.2f),
+                new Star(2, "α", "Ωri", pos, 1.5f, 0.1f),
+                new Star(3, "Étoile – 星", pos, 2.5f, 0.3f));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCatalogueWriter.write(stars, out);
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(out.toByteArray()), builder);
+        assertSameStars(byMagnitude(stars), builder.stars());
+
+        int expectedBytes = 3 * Integer.BYTES;
+        for (Star star : stars)
+            expectedBytes += BinaryCatalogueWriter.recordBytes(star);
+        assertEquals(expectedBytes, out.size());
+    }
+
+    @Test
+    void shippedBinaryCatalogueMatchesCsv() throws IOException {
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try (InputStream s = BinaryCatalogueLoaderTest.class.getResourceAsStream("/hygdata_v3.bin")) {
+            assertNotNull(s);
+            BinaryCatalogueLoader.INSTANCE.load(s, builder);
+        }
+        assertSameStars(byMagnitude(hygStars()), builder.stars());
+    }
+
+    @Test
+    void starsAreReadByMagnitude() throws IOException {
+        List<Double> magnitudes = new ArrayList<>();
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try (InputStream s = BinaryCatalogueLoaderTest.class.getResourceAsStream("/hygdata_v3.bin")) {
+            BinaryCatalogueLoader.INSTANCE.load(s, builder, m -> {
+                assertEquals(magnitudes.size(), builder.stars().size());
+                magnitudes.add(m);
+            });
+        }
+
+        assertEquals(builder.stars().size(), magnitudes.size());
+        for (int i = 0; i < magnitudes.size(); i++) {
+            assertEquals(builder.stars().get(i).magnitude(), magnitudes.get(i));
+            if (i > 0)
+                assertTrue(magnitudes.get(i - 1) <= magnitudes.get(i));
+        }
+    }
+
+    @Test
+    void longRecordsAreReadFromStreams() throws IOException {
+        var pos = EquatorialCoordinates.of(1, 0.5);
+        List<Star> stars = List.of(
+                new Star(1, "a".repeat(0xFFFF), pos, 0.5f, 0.2f),
+                new Star(2, "b".repeat(0xFFFF), pos, 1.5f, 0.1f));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCatalogueWriter.write(stars, out);
+
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(out.toByteArray()), builder);
+        assertSameStars(stars, builder.stars());
+    }
+
+    @Test
+    void starsOutOfMagnitudeOrderAreRejected() throws IOException {
+        var pos = EquatorialCoordinates.of(1, 0.5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BinaryCatalogueLoader.MAGIC);
+        data.writeInt(BinaryCatalogueLoader.VERSION);
+        data.writeInt(2);
+        BinaryCatalogueWriter.writeStar(data, new Star(1, "A", pos, 2.5f, 0.2f));
+        BinaryCatalogueWriter.writeStar(data, new Star(2, "B", pos, 1.5f, 0.2f));
+        data.flush();
+
+        assertThrows(IOException.class, () -> {
+            BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(out.toByteArray()),
+                    new StarCatalogue.Builder());
+        });
+    }
+
+    @Test
+    void binaryLoaderRejectsInvalidInput() {
+        assertThrows(IOException.class, () -> {
+            BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}),
+                    new StarCatalogue.Builder());
+        });
+        assertThrows(IOException.class, () -> {
+            BinaryCatalogueLoader.INSTANCE.load(new ByteArrayInputStream(new byte[]{0x52, 0x47}),
+                    new StarCatalogue.Builder());
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueLoadingStageTest {
+
+    private static InputStream resource(String name) {
+        return CatalogueLoadingStageTest.class.getResourceAsStream(name);
+    }
+
+    @Test
+    void concurrentLoadingMatchesSequentialLoading() throws IOException {
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try (InputStream s = resource("/bound_20.dat")) {
+            builder.loadFrom(s, BoundariesLoader.INSTANCE);
+        }
+        try (InputStream s = resource("/hygdata_v3.csv")) {
+            builder.loadFrom(s, HygDatabaseLoader.INSTANCE);
+        }
+        try (InputStream s = resource("/asterisms.txt")) {
+            builder.loadFrom(s, AsterismLoader.INSTANCE);
+        }
+        StarCatalogue expected = builder.build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            StarCatalogue actual = new CatalogueLoadingStage()
+                    .add("boundaries", () -> resource("/bound_20.dat"), BoundariesLoader.INSTANCE)
+                    .add("stars", () -> resource("/hygdata_v3.csv"), HygDatabaseLoader.INSTANCE)
+                    .add("asterisms", () -> resource("/asterisms.txt"), AsterismLoader.INSTANCE, "stars")
+                    .run(executor)
+                    .join();
+
+            assertEquals(expected.starCount(), actual.starCount());
+            for (int i = 0; i < expected.starCount(); i++)
+                assertEquals(expected.starHipparcosId(i), actual.starHipparcosId(i));
+            assertEquals(expected.asterisms().size(), actual.asterisms().size());
+            assertEquals(expected.boundaries().size(), actual.boundaries().size());
+            for (Asterism asterism : actual.asterisms()) {
+                List<Integer> indices = actual.asterismIndices(asterism);
+                for (int j = 0; j < indices.size(); j++)
+                    assertEquals(asterism.stars().get(j).hipparcosId(),
+                            actual.starHipparcosId(indices.get(j)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void dependentLoadersShareTheirDependenciesBuilder() {
+        List<StarCatalogue.Builder> seen = new ArrayList<>();
+        StarCatalogue.Loader first = (s, b) -> {
+            seen.add(b);
+            b.addStar(new Star(1, "A", EquatorialCoordinates.of(0, 0), 0, 0));
+        };
+        StarCatalogue.Loader second = (s, b) -> {
+            seen.add(b);
+            assertEquals(1, b.stars().size());
+            b.addAsterism(new Asterism(b.stars()));
+        };
+        StarCatalogue.Loader independent = (s, b) ->
+                b.addStar(new Star(2, "B", EquatorialCoordinates.of(1, 0), 0, 0));
+
+        StarCatalogue catalogue = new CatalogueLoadingStage()
+                .add("first", InputStream::nullInputStream, first)
+                .add("independent", InputStream::nullInputStream, independent)
+                .add("second", InputStream::nullInputStream, second, "first")
+                .run(Runnable::run)
+                .join();
+
+        assertEquals(2, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+        assertEquals(List.of(1, 2), List.of(catalogue.starHipparcosId(0), catalogue.starHipparcosId(1)));
+        assertEquals(1, catalogue.asterisms().size());
+    }
+
+    @Test
+    void independentLoadersRunConcurrently() {
+        // Chaque chargeur attend l'autre : un chargement séquentiel échoue
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StarCatalogue.Loader waiting = (s, b) -> {
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertDoesNotThrow(() -> new CatalogueLoadingStage()
+                    .add("a", InputStream::nullInputStream, waiting)
+                    .add("b", InputStream::nullInputStream, waiting)
+                    .run(executor)
+                    .join());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void loaderWithSeveralDependenciesSeesAllOfThem() {
+        StarCatalogue.Loader a = (s, b) ->
+                b.addStar(new Star(1, "A", EquatorialCoordinates.of(0, 0), 0, 0));
+        StarCatalogue.Loader b = (s, builder) ->
+                builder.addStar(new Star(2, "B", EquatorialCoordinates.of(1, 0), 0, 0));
+        StarCatalogue.Loader c = (s, builder) ->
+                builder.addStar(new Star(3, "C", EquatorialCoordinates.of(2, 0), 0, 0));
+        StarCatalogue.Loader both = (s, builder) -> {
+            assertEquals(2, builder.stars().size());
+            builder.addAsterism(new Asterism(builder.stars()));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            StarCatalogue catalogue = new CatalogueLoadingStage()
+                    .add("b", InputStream::nullInputStream, b)
+                    .add("c", InputStream::nullInputStream, c)
+                    .add("a", InputStream::nullInputStream, a)
+                    .add("both", InputStream::nullInputStream, both, "a", "b")
+                    .run(executor)
+                    .join();
+
+            assertEquals(List.of(2, 1, 3), List.of(catalogue.starHipparcosId(0),
+                    catalogue.starHipparcosId(1), catalogue.starHipparcosId(2)));
+            Asterism asterism = catalogue.asterisms().iterator().next();
+            assertEquals(List.of(0, 1), catalogue.asterismIndices(asterism));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void progressIncreasesUpToOne() {
+        List<Double> progress = new ArrayList<>();
+        StarCatalogue.Loader nothing = (s, b) -> {
+        };
+
+        new CatalogueLoadingStage()
+                .add("a", InputStream::nullInputStream, nothing)
+                .add("b", InputStream::nullInputStream, nothing, "a")
+                .add("c", InputStream::nullInputStream, nothing)
+                .add("d", InputStream::nullInputStream, nothing)
+                .run(Runnable::run, progress::add)
+                .join();
+
+        assertEquals(List.of(0.25, 0.5, 0.75, 1.0), progress);
+    }
+
+    @Test
+    void unknownDependencyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new CatalogueLoadingStage()
+                    .add("asterisms", () -> resource("/asterisms.txt"), AsterismLoader.INSTANCE, "stars");
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new CatalogueLoadingStage()
+                    .add("a", () -> resource("/asterisms.txt"), AsterismLoader.INSTANCE)
+                    .add("a", () -> resource("/asterisms.txt"), AsterismLoader.INSTANCE);
+        });
+    }
+
+    @Test
+    void ioExceptionsAreReported() {
+        IOException fakeException = new IOException("fake IO exception");
+        CompletionException e = assertThrows(CompletionException.class, () -> {
+            new CatalogueLoadingStage()
+                    .add("stars", () -> {
+                        throw fakeException;
+                    }, HygDatabaseLoader.INSTANCE)
+                    .run(Runnable::run)
+                    .join();
+        });
+        assertTrue(e.getCause() instanceof UncheckedIOException);
+        assertSame(fakeException, e.getCause().getCause());
+    }
+}
@@ -0,0 +1,115 @@
+package ch.epfl.rigel.astronomy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueSnapshotTest {
+
+    private static StarCatalogue resourceCatalogue() throws IOException {
+        StarCatalogue.Builder builder = new StarCatalogue.Builder();
+        try (InputStream s = CatalogueSnapshotTest.class.getResourceAsStream("/bound_20.dat")) {
+            builder.loadFrom(s, BoundariesLoader.INSTANCE);
+        }
+        try (InputStream s = CatalogueSnapshotTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+            builder.loadFrom(s, HygDatabaseLoader.INSTANCE);
+        }
+        try (InputStream s = CatalogueSnapshotTest.class.getResourceAsStream("/asterisms.txt")) {
+            builder.loadFrom(s, AsterismLoader.INSTANCE);
+        }
+        return builder.build();
+    }
+
+    private static List<List<Integer>> hipparcosOfAsterisms(StarCatalogue c) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (Asterism asterism : c.asterisms()) {
+            List<Integer> hips = new ArrayList<>();
+            for (int index : c.asterismIndices(asterism))
+                hips.add(c.stars().get(index).hipparcosId());
+            result.add(hips);
+        }
+        result.sort((a, b) -> a.toString().compareTo(b.toString()));
+        return result;
+    }
+
+    @Test
+    void keyDependsOnContentAndOrder() {
+        byte[] a = {1, 2, 3};
+        byte[] b = {4, 5};
+        assertEquals(CatalogueSnapshot.key(a, b), CatalogueSnapshot.key(a.clone(), b.clone()));
+        assertNotEquals(CatalogueSnapshot.key(a, b), CatalogueSnapshot.key(b, a));
+        assertNotEquals(CatalogueSnapshot.key(new byte[]{1}, new byte[]{2, 3}),
+                CatalogueSnapshot.key(new byte[]{1, 2}, new byte[]{3}));
+    }
+
+    @Test
+    void keyOfSourcesMatchesKeyOfContents() throws IOException {
+        byte[] a = {1, 2, 3};
+        byte[] b = new byte[200_000];
+        new Random(1).nextBytes(b);
+        Path file = Files.createTempFile("rigel", ".bin");
+        try {
+            Files.write(file, b);
+            String expected = CatalogueSnapshot.key(a, b);
+            assertEquals(expected, CatalogueSnapshot.key(
+                    () -> new ByteArrayInputStream(a), () -> new ByteArrayInputStream(b)));
+            assertEquals(expected, CatalogueSnapshot.key(
+                    () -> new ByteArrayInputStream(a), () -> new FileInputStream(file.toFile())));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void snapshotRestoresCatalogue() throws IOException {
+        StarCatalogue catalogue = resourceCatalogue();
+        Path file = Files.createTempDirectory("rigel").resolve("catalogue.snapshot");
+        try {
+            CatalogueSnapshot.write(catalogue, "k", file);
+            StarCatalogue restored = CatalogueSnapshot.read(file, "k").orElseThrow();
+
+            assertEquals(catalogue.stars().size(), restored.stars().size());
+            for (int i = 0; i < catalogue.stars().size(); i++) {
+                assertEquals(catalogue.stars().get(i).name(), restored.stars().get(i).name());
+                assertEquals(catalogue.starRa(i), restored.starRa(i));
+                assertEquals(catalogue.starDec(i), restored.starDec(i));
+            }
+            assertEquals(hipparcosOfAsterisms(catalogue), hipparcosOfAsterisms(restored));
+            assertEquals(catalogue.boundaries().size(), restored.boundaries().size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(file.getParent());
+        }
+    }
+
+    @Test
+    void snapshotWithOtherKeyIsIgnored() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogueSnapshot.write(new StarCatalogue.Builder().build(), "k1", out);
+        assertTrue(CatalogueSnapshot.read(ByteBuffer.wrap(out.toByteArray()), "k2").isEmpty());
+        assertTrue(CatalogueSnapshot.read(ByteBuffer.wrap(out.toByteArray()), "k1").isPresent());
+        assertTrue(CatalogueSnapshot.read(Path.of("does-not-exist.snapshot"), "k1").isEmpty());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogueSnapshot.write(resourceCatalogue(), "k", out);
+        byte[] bytes = out.toByteArray();
+        assertThrows(IOException.class, () -> {
+            CatalogueSnapshot.read(ByteBuffer.wrap(bytes, 0, bytes.length / 2), "k");
+        });
+    }
+}
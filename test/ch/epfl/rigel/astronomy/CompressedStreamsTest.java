@@ -0,0 +1,124 @@
+package ch.epfl.rigel.astronomy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressedStreamsTest {
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream s = CompressedStreamsTest.class.getResourceAsStream(name)) {
+            return s.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static StarCatalogue load(byte[] boundaries, byte[] hyg,
+                                      byte[] asterisms, StarCatalogue.Loader hygLoader) throws IOException {
+        return new StarCatalogue.Builder()
+                .loadFrom(new ByteArrayInputStream(boundaries), BoundariesLoader.INSTANCE)
+                .loadFrom(new ByteArrayInputStream(hyg), hygLoader)
+                .loadFrom(new ByteArrayInputStream(asterisms), AsterismLoader.INSTANCE)
+                .build();
+    }
+
+    @Test
+    void gzipResourcesLoadLikePlainOnes() throws IOException {
+        byte[] boundaries = resource("/bound_20.dat");
+        byte[] hyg = resource("/hygdata_v3.csv");
+        byte[] asterisms = resource("/asterisms.txt");
+
+        StarCatalogue expected = load(boundaries, hyg, asterisms, HygDatabaseLoader.INSTANCE);
+        for (StarCatalogue.Loader loader : HygDatabaseLoader.values()) {
+            StarCatalogue actual = load(gzip(boundaries), gzip(hyg), gzip(asterisms), loader);
+
+            assertEquals(expected.starCount(), actual.starCount());
+            for (int i = 0; i < expected.starCount(); i++) {
+                assertEquals(expected.starHipparcosId(i), actual.starHipparcosId(i));
+                assertEquals(expected.stars().get(i).name(), actual.stars().get(i).name());
+            }
+            assertEquals(expected.asterisms().size(), actual.asterisms().size());
+            assertEquals(expected.boundaries().size(), actual.boundaries().size());
+        }
+    }
+
+    @Test
+    void multiMemberGzipAndZipAreDecompressed() throws IOException {
+        byte[] hyg = resource("/hygdata_v3.csv");
+        int half = hyg.length / 2;
+
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        blocks.write(gzip(Arrays.copyOfRange(hyg, 0, half)));
+        blocks.write(gzip(Arrays.copyOfRange(hyg, half, hyg.length)));
+        try (InputStream s = CompressedStreams.open(new ByteArrayInputStream(blocks.toByteArray()))) {
+            assertArrayEquals(hyg, s.readAllBytes());
+        }
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream z = new ZipOutputStream(zip)) {
+            z.putNextEntry(new ZipEntry("hygdata_v3.csv"));
+            z.write(hyg);
+        }
+        try (InputStream s = CompressedStreams.open(new ByteArrayInputStream(zip.toByteArray()))) {
+            assertArrayEquals(hyg, s.readAllBytes());
+        }
+    }
+
+    @Test
+    void plainAndShortStreamsArePassedThrough() throws IOException {
+        byte[] bytes = {1, 2};
+        try (InputStream s = CompressedStreams.open(new ByteArrayInputStream(bytes))) {
+            assertArrayEquals(bytes, s.readAllBytes());
+        }
+        try (InputStream s = CompressedStreams.open(new ByteArrayInputStream(new byte[0]))) {
+            assertEquals(-1, s.read());
+        }
+    }
+
+    @Test
+    void runtimeExceptionInSourceEndsTheStream() throws IOException {
+        byte[] gz = gzip(resource("/hygdata_v3.csv"));
+        InputStream failing = new ByteArrayInputStream(gz) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > gz.length / 2)
+                    throw new IllegalStateException("fake failure");
+                return super.read(b, off, len);
+            }
+        };
+        IOException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> {
+            try (InputStream s = CompressedStreams.open(failing)) {
+                s.readAllBytes();
+            }
+        }));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void truncatedGzipThrowsIOException() throws IOException {
+        byte[] gz = gzip(resource("/hygdata_v3.csv"));
+        byte[] truncated = Arrays.copyOf(gz, gz.length / 2);
+        assertThrows(IOException.class, () -> {
+            try (InputStream s = CompressedStreams.open(new ByteArrayInputStream(truncated))) {
+                s.readAllBytes();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HipparcosIndexTest {
+
+    @Test
+    void hipparcosIndexBehavesLikeAMap() {
+        var rng = TestRandomizer.newRandom();
+        var index = new HipparcosIndex(0);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            int hip = rng.nextInt(200_000);
+            index.put(hip, i);
+            expected.put(hip, i);
+        }
+        assertEquals(expected.size(), index.size());
+        for (int hip = 0; hip < 200_000; hip++)
+            assertEquals(expected.getOrDefault(hip, -1), index.get(hip));
+    }
+
+    @Test
+    void hipparcosIndexKeepsLastDuplicate() {
+        var index = HipparcosIndex.of(new int[]{0, 7, 0, 3});
+        assertEquals(2, index.get(0));
+        assertEquals(1, index.get(7));
+        assertEquals(3, index.get(3));
+        assertEquals(-1, index.get(4));
+        assertEquals(-1, index.get(-1));
+    }
+
+    @Test
+    void hipparcosIndexRejectsNegativeIds() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new HipparcosIndex(4).put(-3, 0);
+        });
+    }
+}
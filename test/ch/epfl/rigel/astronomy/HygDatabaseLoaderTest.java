@@ -85,6 +85,51 @@ public class HygDatabaseLoaderTest {
         }
     }
 
+    @Test
+    void parallelLoaderMatchesSequentialLoader() throws IOException {
+        var sequential = new StarCatalogue.Builder();
+        try (var stream = getClass().getResourceAsStream("/hygdata_v3.csv")) {
+            HygDatabaseLoader.INSTANCE.load(stream, sequential);
+        }
+        var parallel = new StarCatalogue.Builder();
+        try (var stream = getClass().getResourceAsStream("/hygdata_v3.csv")) {
+            HygDatabaseLoader.PARALLEL.load(stream, parallel);
+        }
+
+        assertEquals(sequential.stars().size(), parallel.stars().size());
+        for (int i = 0; i < sequential.stars().size(); i++) {
+            var s = sequential.stars().get(i);
+            var p = parallel.stars().get(i);
+            assertEquals(s.hipparcosId(), p.hipparcosId());
+            assertEquals(s.name(), p.name());
+            assertEquals(s.equatorialPos().ra(), p.equatorialPos().ra());
+            assertEquals(s.equatorialPos().dec(), p.equatorialPos().dec());
+            assertEquals(s.magnitude(), p.magnitude());
+            assertEquals(s.colorTemperature(), p.colorTemperature());
+        }
+    }
+
+    @Test
+    void parallelLoaderHandlesDefaultsAndLineEndings() throws IOException {
+        var lines = String.join("\r\n", HEADER_LINE, NO_HIP_LINE, NO_CI_LINE, CONSTELLATION_NO_BAYER_LINE) + "\r\n";
+        var b = new StarCatalogue.Builder();
+        HygDatabaseLoader.PARALLEL.load(new ByteArrayInputStream(lines.getBytes(StandardCharsets.US_ASCII)), b);
+        var stars = b.build().stars();
+        assertEquals(3, stars.size());
+        assertEquals(0, stars.get(0).hipparcosId());
+        assertEquals(10125, stars.get(1).colorTemperature());
+        assertEquals("? Phe", stars.get(2).name());
+    }
+
+    @Test
+    void malformedHipparcosNumberIsRejectedByBothLoaders() {
+        var malformed = RIGEL_LINE.replaceFirst(",24436,", ",24x36,");
+        for (var loader : new StarCatalogue.Loader[] {HygDatabaseLoader.INSTANCE, HygDatabaseLoader.PARALLEL}) {
+            assertThrows(NumberFormatException.class, () -> loader.load(
+                    streamWithAsciiLines(HEADER_LINE, malformed), new StarCatalogue.Builder()));
+        }
+    }
+
     @Test
     void hygLoaderCorrectlyHandlesIOExceptions() {
         IOException fakeException = new IOException("fake IO exception");
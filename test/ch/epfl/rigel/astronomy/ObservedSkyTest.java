@@ -2,11 +2,19 @@ package ch.epfl.rigel.astronomy;
 
 import ch.epfl.rigel.coordinates.*;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
 import java.time.*;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -14,43 +22,256 @@ import java.util.Optional;
  * @author Yanis Seddik (310086)
  */
 public class ObservedSkyTest {
+    private final static ZonedDateTime TIME =
+            ZonedDateTime.of(LocalDate.of(2020, Month.APRIL, 4), LocalTime.of(0, 0), ZoneOffset.UTC);
+    private final static GeographicCoordinates GEO_COORDS = GeographicCoordinates.ofDeg(30, 45);
+    private final static StereographicProjection STEREO =
+            new StereographicProjection(HorizontalCoordinates.ofDeg(20, 22));
+
+    private static StarCatalogue.Builder loadFrom(StarCatalogue.Builder builder, String resourceName,
+                                                  StarCatalogue.Loader loader) throws IOException {
+        try (InputStream s = ObservedSkyTest.class.getResourceAsStream(resourceName)) {
+            return builder.loadFrom(s, loader);
+        }
+    }
+
+    private static StarCatalogue.Builder hygBuilder() throws IOException {
+        return loadFrom(new StarCatalogue.Builder(), "/hygdata_v3.csv", HygDatabaseLoader.INSTANCE);
+    }
+
+    private static StarCatalogue boundariesCatalogue() throws IOException {
+        return loadFrom(new StarCatalogue.Builder(), "/bound_20.dat", BoundariesLoader.INSTANCE).build();
+    }
+
+    // Loin du centre de projection, le dénominateur de la projection amplifie
+    // les erreurs d'arrondi du calcul fusionné des positions compactes
+    private static void assertSamePoint(CartesianCoordinates expected, double x, double y) {
+        assertEquals(expected.x(), x, 1e-9 * Math.max(1, Math.abs(expected.x())));
+        assertEquals(expected.y(), y, 1e-9 * Math.max(1, Math.abs(expected.y())));
+    }
 
     @Test
     void test() throws IOException {
-        String HYG_CATALOGUE_NAME = "/hygdata_v3.csv";
-        String AST_CATALOGUE_NAME = "/asterisms.txt";
+        StarCatalogue catalogue = loadFrom(hygBuilder(), "/asterisms.txt", AsterismLoader.INSTANCE).build();
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+        EquatorialToHorizontalConversion convEquToHor = new EquatorialToHorizontalConversion(TIME, GEO_COORDS);
+
+        assertEquals("Tau Phe", sky.objectClosestTo(STEREO.apply(convEquToHor
+                .apply(EquatorialCoordinates.of(0.004696959812148989, -0.861893035343076))), 0.3).get().name());
+
+        assertEquals(Optional.empty(),
+                sky.objectClosestTo(STEREO.apply(convEquToHor
+                        .apply(EquatorialCoordinates.of(0.04696959812148989, -0.8618930353430763))), 0.001));
+
+    }
+
+    @Test
+    void boundaryPositionsMatchPerConstellationProjection() throws IOException {
+        StarCatalogue catalogue = boundariesCatalogue();
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+        EquatorialToHorizontalConversion convEquToHor = new EquatorialToHorizontalConversion(TIME, GEO_COORDS);
 
-        StarCatalogue catalogue;
-        ObservedSky sky;
-        StereographicProjection stereo;
-        GeographicCoordinates geoCoords;
-        ZonedDateTime time;
-        EquatorialToHorizontalConversion convEquToHor;
-        EclipticToEquatorialConversion convEcltoEqu;
-        StarCatalogue.Builder builder;
+        double[] positions = new double[2 * catalogue.boundaryPointCount() + 2];
+        sky.boundaryPositions(positions);
 
-        try (InputStream hygStream = getClass().getResourceAsStream(HYG_CATALOGUE_NAME)) {
-            builder = new StarCatalogue.Builder().loadFrom(hygStream, HygDatabaseLoader.INSTANCE);
+        List<Boundaries> boundaries = List.copyOf(catalogue.boundaries());
+        assertEquals(boundaries.size(), catalogue.boundaryCount());
+        int count = 0;
+        for (int i = 0; i < catalogue.boundaryCount(); i++) {
+            List<EquatorialCoordinates> points = boundaries.get(i).getPoints();
+            CartesianCoordinates[] projected = sky.bundariesPosition(boundaries.get(i));
+            assertEquals(points.size(), projected.length);
+            int from = catalogue.boundaryOffset(i);
+            assertEquals(count, from);
+            for (int j = 0; j < points.size(); j++) {
+                CartesianCoordinates expected = STEREO.apply(convEquToHor.apply(points.get(j)));
+                assertSamePoint(expected, positions[2 * (from + j)], positions[2 * (from + j) + 1]);
+                assertSamePoint(expected, projected[j].x(), projected[j].y());
+            }
+            count += points.size();
         }
+        assertEquals(catalogue.boundaryPointCount(), count);
+
+        assertThrows(IllegalArgumentException.class, () -> sky.boundaryPositions(new double[1]));
+    }
+
+    @Test
+    void limitingMagnitudeProjectsOnlyBrighterStars() throws IOException {
+        StarCatalogue catalogue = hygBuilder().build();
+        ObservedSky full = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+        ObservedSky limited = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue, 3);
+
+        assertEquals(Double.POSITIVE_INFINITY, full.limitingMagnitude());
+        assertEquals(catalogue.starCount(), full.visibleStars().remaining());
+        assertEquals(3, limited.limitingMagnitude());
 
-        try (InputStream astStream = getClass().getResourceAsStream(AST_CATALOGUE_NAME)) {
-            catalogue = builder.loadFrom(astStream, AsterismLoader.INSTANCE).build();
+        IntBuffer visible = limited.visibleStars();
+        assertEquals(catalogue.brighterThanCount(3), visible.remaining());
+
+        double[] expected = full.starPosition();
+        double[] actual = limited.starPosition();
+        int projected = 0;
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            if (catalogue.starMagnitude(i) <= 3) {
+                assertEquals(expected[2 * i], actual[2 * i]);
+                assertEquals(expected[2 * i + 1], actual[2 * i + 1]);
+                projected++;
+            } else {
+                assertTrue(Double.isNaN(actual[2 * i]));
+                assertTrue(Double.isNaN(actual[2 * i + 1]));
+            }
         }
+        assertEquals(visible.remaining(), projected);
+    }
 
-        time = ZonedDateTime.of(LocalDate.of(2020, Month.APRIL, 4), LocalTime.of(0, 0), ZoneOffset.UTC);
-        geoCoords = GeographicCoordinates.ofDeg(30, 45);
-        stereo = new StereographicProjection(HorizontalCoordinates.ofDeg(20, 22));
-        convEquToHor = new EquatorialToHorizontalConversion(time, geoCoords);
-        convEcltoEqu = new EclipticToEquatorialConversion(time);
-        sky = new ObservedSky(time, geoCoords, stereo, catalogue);
+    @Test
+    void parallelProjectionMatchesSerialProjection() throws IOException {
+        StarCatalogue catalogue = hygBuilder().build();
 
-        assertEquals("Tau Phe", sky.objectClosestTo(stereo.apply(new EquatorialToHorizontalConversion(time, geoCoords)
-                .apply(EquatorialCoordinates.of(0.004696959812148989, -0.861893035343076))), 0.3).get().name());
+        for (double limit : new double[]{3, 9, Double.POSITIVE_INFINITY}) {
+            ObservedSky serial = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue, limit,
+                    ObservedSky.StarProjection.SERIAL);
+            ObservedSky parallel = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue, limit,
+                    ObservedSky.StarProjection.PARALLEL);
+            assertArrayEquals(serial.starPosition(), parallel.starPosition());
+        }
+    }
 
-        assertEquals(Optional.empty(),
-                sky.objectClosestTo(stereo.apply(new EquatorialToHorizontalConversion(time, geoCoords)
-                        .apply(EquatorialCoordinates.of(0.04696959812148989, -0.8618930353430763))), 0.001));
+    @Test
+    void advanceToMatchesANewSkyAtTheNewInstant() throws IOException {
+        StarCatalogue catalogue = hygBuilder().build();
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue, 6);
+        double[] stars = sky.starPosition();
 
+        // Au-delà de la tolérance, tout est recalculé
+        ZonedDateTime later = TIME.plusHours(3);
+        sky.advanceTo(later);
+        ObservedSky fresh = new ObservedSky(later, GEO_COORDS, STEREO, catalogue, 6);
+        assertEquals(later, sky.when());
+        assertSame(stars, sky.starPosition());
+        assertArrayEquals(fresh.starPosition(), sky.starPosition());
+        assertArrayEquals(fresh.planetPosition(), sky.planetPosition());
+        assertEquals(fresh.sunPosition().x(), sky.sunPosition().x());
+        assertEquals(fresh.moonPosition().y(), sky.moonPosition().y());
+        assertEquals(fresh.moon().equatorialPos().ra(), sky.moon().equatorialPos().ra());
+        assertEquals(fresh.sunTracePosition()[100].x(), sky.sunTracePosition()[100].x());
+
+        // En deçà, les étoiles et les projections sont à jour, mais les corps
+        // du système solaire gardent leurs positions équatoriales
+        ZonedDateTime soon = later.plusSeconds(30);
+        var moon = sky.moon();
+        sky.advanceTo(soon);
+        fresh = new ObservedSky(soon, GEO_COORDS, STEREO, catalogue, 6);
+        assertSame(moon, sky.moon());
+        assertArrayEquals(fresh.starPosition(), sky.starPosition());
+        assertEquals(fresh.moonPosition().x(), sky.moonPosition().x(), 2e-4);
+        assertEquals(fresh.moonPosition().y(), sky.moonPosition().y(), 2e-4);
     }
 
+    @Test
+    void componentsAreComputedForTheInstantOfTheirFirstAccess() throws IOException {
+        StarCatalogue catalogue = boundariesCatalogue();
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+
+        // Les corps jamais consultés sont calculés à l'instant courant, même
+        // après des avancées inférieures à la tolérance
+        for (int i = 1; i <= 10; i++)
+            sky.advanceTo(TIME.plusSeconds(30 * i));
+        ObservedSky fresh = new ObservedSky(sky.when(), GEO_COORDS, STEREO, catalogue);
+        assertEquals(fresh.moon().equatorialPos().ra(), sky.moon().equatorialPos().ra());
+        assertEquals(fresh.sunPosition().x(), sky.sunPosition().x());
+        assertEquals(fresh.moonTracePosition()[10].y(), sky.moonTracePosition()[10].y());
+
+        double[] first = new double[2 * catalogue.boundaryPointCount()];
+        double[] second = new double[first.length];
+        sky.boundaryPositions(first);
+        sky.boundaryPositions(second);
+        assertArrayEquals(first, second);
+
+        sky.advanceTo(sky.when().plusHours(1));
+        sky.boundaryPositions(second);
+        fresh = new ObservedSky(sky.when(), GEO_COORDS, STEREO, catalogue);
+        fresh.boundaryPositions(first);
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void objectClosestToFindsEveryVisibleStarBelowAFiniteLimit() throws IOException {
+        StarCatalogue catalogue = hygBuilder().build();
+        ObservedSky full = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+        ObservedSky limited = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue, 4);
+        double[] positions = full.starPosition();
+
+        IntBuffer visible = limited.visibleStars();
+        assertTrue(visible.remaining() > 0);
+        for (int r = 0; r < visible.remaining(); r++) {
+            int s = visible.get(visible.position() + r);
+            CartesianCoordinates point = CartesianCoordinates.of(positions[2 * s], positions[2 * s + 1]);
+            CelestialObject closest = limited.objectClosestTo(point, 1e-9).orElseThrow();
+            assertEquals(catalogue.starHipparcosId(s), ((Star) closest).hipparcosId());
+        }
+
+        // Les étoiles plus faibles que la limite ne peuvent être désignées
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            if (catalogue.starMagnitude(i) > 4) {
+                CartesianCoordinates point = CartesianCoordinates.of(positions[2 * i], positions[2 * i + 1]);
+                Optional<CelestialObject> closest = limited.objectClosestTo(point, 1e-9);
+                assertTrue(closest.isEmpty() || closest.get().magnitude() <= 4);
+            }
+        }
+    }
+
+    @Test
+    void infiniteLimitingMagnitudeProjectsFaintStars() throws IOException {
+        // Limite par défaut du gestionnaire du canevas : aucune étoile n'est
+        // écartée, pas même celles plus faibles que 5,5
+        StarCatalogue catalogue = hygBuilder().build();
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue,
+                Double.POSITIVE_INFINITY, ObservedSky.StarProjection.PARALLEL);
+
+        assertEquals(catalogue.starCount(), sky.visibleStars().remaining());
+        int faint = 0;
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            if (catalogue.starMagnitude(i) > 5.5) {
+                ++faint;
+                assertFalse(Double.isNaN(sky.starPosition()[2 * i]));
+            }
+        }
+        assertTrue(faint > 0);
+    }
+
+    @Test
+    void objectClosestToBuildsOnlyTheClosestStar() throws IOException {
+        StarCatalogue catalogue = hygBuilder().build(StarCatalogue.Storage.COMPACT);
+        ObservedSky sky = new ObservedSky(TIME, GEO_COORDS, STEREO, catalogue);
+
+        int brightest = catalogue.starIndexByMagnitude(0);
+        CartesianCoordinates point = CartesianCoordinates.of(
+                sky.starPosition()[2 * brightest], sky.starPosition()[2 * brightest + 1]);
+        assertEquals(catalogue.starHipparcosId(brightest),
+                ((Star) sky.objectClosestTo(point, 1e-3).orElseThrow()).hipparcosId());
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int calls = 1000;
+        Object[] results = new Object[calls];
+        for (int i = 0; i < calls; i++) {
+            results[i] = catalogue.stars().get(brightest);
+            results[i] = sky.objectClosestTo(point, 1e-3);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++)
+            results[i] = catalogue.stars().get(brightest);
+        long starBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+        before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++)
+            results[i] = sky.objectClosestTo(point, 1e-3);
+        long closestBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Une étoile et son Optional, alors que le catalogue en compte
+        // plusieurs milliers
+        assertTrue(closestBytes < 2 * starBytes, closestBytes + " octets contre " + starBytes);
+    }
 }
@@ -0,0 +1,136 @@
+package ch.epfl.rigel.astronomy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProgressiveCatalogueLoaderTest {
+
+    private static InputStream resource(String name) {
+        return ProgressiveCatalogueLoaderTest.class.getResourceAsStream(name);
+    }
+
+    private static ProgressiveCatalogueLoader loader(CatalogueLoadingStage.Source stars) {
+        return new ProgressiveCatalogueLoader(
+                () -> resource("/bound_20.dat"),
+                stars,
+                () -> resource("/asterisms.txt"));
+    }
+
+    private static int countBrighterThan(StarCatalogue catalogue, double magnitude) {
+        int count = 0;
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            if (catalogue.starMagnitude(i) <= magnitude)
+                ++count;
+        }
+        return count;
+    }
+
+    @Test
+    void tiersArePublishedInOrder() {
+        List<StarCatalogue> tiers = new ArrayList<>();
+        StarCatalogue full = loader(() -> resource("/hygdata_v3.bin"))
+                .load(ForkJoinPool.commonPool(), tiers::add, 2, 4)
+                .join();
+
+        assertEquals(3, tiers.size());
+        assertSame(full, tiers.get(2));
+        assertTrue(full.asterisms().size() > 0);
+        assertTrue(full.boundaries().size() > 0);
+
+        double[] magnitudes = {2, 4};
+        for (int t = 0; t < magnitudes.length; t++) {
+            StarCatalogue tier = tiers.get(t);
+            assertEquals(countBrighterThan(full, magnitudes[t]), tier.starCount());
+            assertEquals(tier.starCount(), countBrighterThan(tier, magnitudes[t]));
+            for (int i = 0; i < tier.starCount(); i++)
+                assertTrue(full.starIndexOfHipparcos(tier.starHipparcosId(i)) >= 0);
+        }
+    }
+
+    @Test
+    void firstTierIsPublishedBeforeTheCatalogueIsRead() throws IOException {
+        byte[] bytes;
+        try (InputStream s = resource("/hygdata_v3.bin")) {
+            bytes = s.readAllBytes();
+        }
+        int gate = bytes.length / 2;
+        CountDownLatch firstTier = new CountDownLatch(1);
+
+        // Flot ne livrant sa seconde moitié qu'une fois le premier palier reçu
+        CatalogueLoadingStage.Source gated = () -> new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos < gate)
+                    return super.read(b, off, Math.min(len, gate - pos));
+                try {
+                    if (!firstTier.await(10, TimeUnit.SECONDS))
+                        throw new UncheckedIOException(new IOException("no tier"));
+                } catch (InterruptedException e) {
+                    throw new UncheckedIOException(new IOException(e));
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        List<StarCatalogue> tiers = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            StarCatalogue full = loader(gated)
+                    .load(executor, tier -> {
+                        tiers.add(tier);
+                        firstTier.countDown();
+                    }, 2)
+                    .join();
+
+            assertEquals(2, tiers.size());
+            assertEquals(countBrighterThan(full, 2), tiers.get(0).starCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void sourcesAreReadOnlyOnce() {
+        AtomicInteger opened = new AtomicInteger();
+        List<StarCatalogue> tiers = new ArrayList<>();
+        List<Double> progress = new ArrayList<>();
+        loader(() -> {
+            opened.incrementAndGet();
+            return resource("/hygdata_v3.bin");
+        })
+                .load(ForkJoinPool.commonPool(), tiers::add,
+                        p -> {
+                            synchronized (progress) {
+                                progress.add(p);
+                            }
+                        }, 2, 4, 6, 100)
+                .join();
+
+        assertEquals(5, tiers.size());
+        assertEquals(tiers.get(4).starCount(), tiers.get(3).starCount());
+        assertEquals(1, opened.get());
+        assertEquals(1.0, progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void decreasingMagnitudesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            loader(() -> resource("/hygdata_v3.bin"))
+                    .load(ForkJoinPool.commonPool(), c -> {}, 4, 2);
+        });
+    }
+}
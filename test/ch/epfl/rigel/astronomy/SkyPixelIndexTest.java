@@ -0,0 +1,167 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SkyPixelIndexTest {
+
+    private static StarCatalogue catalogue;
+
+    private static StarCatalogue catalogue() throws IOException {
+        if (catalogue == null) {
+            try (InputStream s = SkyPixelIndexTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+                catalogue = new StarCatalogue.Builder()
+                        .loadFrom(s, HygDatabaseLoader.INSTANCE)
+                        .build();
+            }
+        }
+        return catalogue;
+    }
+
+    private static double randomRa(SplittableRandom rng) {
+        return rng.nextDouble(0, 2 * Math.PI);
+    }
+
+    private static double randomDec(SplittableRandom rng) {
+        return Math.asin(rng.nextDouble(-1, 1));
+    }
+
+    private static double distance(double ra1, double dec1, double ra2, double dec2) {
+        double cos = Math.sin(dec1) * Math.sin(dec2)
+                + Math.cos(dec1) * Math.cos(dec2) * Math.cos(ra1 - ra2);
+        return Math.acos(Math.max(-1, Math.min(1, cos)));
+    }
+
+    @Test
+    void pixelsHaveEqualAreas() {
+        var rng = TestRandomizer.newRandom();
+        int order = 2;
+        int samples = 400_000;
+        int[] counts = new int[SkyPixelIndex.pixelCount(order)];
+        for (int i = 0; i < samples; i++)
+            ++counts[SkyPixelIndex.pixelOf(order, randomRa(rng), randomDec(rng))];
+
+        double expected = (double) samples / counts.length;
+        for (int count : counts)
+            assertEquals(expected, count, expected * 0.15);
+    }
+
+    @Test
+    void pixelsAreNested() {
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < TestRandomizer.RANDOM_ITERATIONS; i++) {
+            double ra = randomRa(rng), dec = randomDec(rng);
+            int fine = SkyPixelIndex.pixelOf(SkyPixelIndex.MAX_ORDER, ra, dec);
+            for (int order = 0; order <= SkyPixelIndex.MAX_ORDER; order++) {
+                int shift = 2 * (SkyPixelIndex.MAX_ORDER - order);
+                assertEquals(fine >>> shift, SkyPixelIndex.pixelOf(order, ra, dec));
+            }
+        }
+    }
+
+    @Test
+    void pixelOfFailsOnInvalidOrder() {
+        assertThrows(IllegalArgumentException.class, () -> SkyPixelIndex.pixelOf(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> SkyPixelIndex.pixelOf(SkyPixelIndex.MAX_ORDER + 1, 0, 0));
+    }
+
+    @Test
+    void coneMatchesLinearScan() throws IOException {
+        var catalogue = catalogue();
+        var index = catalogue.pixelIndex();
+        assertSame(index, catalogue.pixelIndex());
+
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < 50; i++) {
+            double ra = randomRa(rng), dec = randomDec(rng);
+            double radius = rng.nextDouble(0.01, 1.5);
+            int[] expected = IntStream.range(0, catalogue.starCount())
+                    .filter(s -> distance(ra, dec, catalogue.starRa(s), catalogue.starDec(s)) <= radius)
+                    .toArray();
+            assertArrayEquals(expected, index.cone(ra, dec, radius));
+        }
+    }
+
+    @Test
+    void polygonMatchesLinearScan() throws IOException {
+        var catalogue = catalogue();
+        var index = catalogue.pixelIndex();
+
+        // Orion, grossièrement, parcouru dans les deux sens
+        var vertices = List.of(
+                EquatorialCoordinates.of(Math.toRadians(75), Math.toRadians(-12)),
+                EquatorialCoordinates.of(Math.toRadians(95), Math.toRadians(-12)),
+                EquatorialCoordinates.of(Math.toRadians(95), Math.toRadians(20)),
+                EquatorialCoordinates.of(Math.toRadians(75), Math.toRadians(20)));
+        int[] found = index.polygon(vertices);
+
+        double raMin = Math.toRadians(75), raMax = Math.toRadians(95);
+        int inner = 0;
+        for (int s = 0; s < catalogue.starCount(); s++) {
+            double ra = catalogue.starRa(s), dec = catalogue.starDec(s);
+            // Loin des côtés, l'appartenance ne dépend pas de la courbure
+            if (ra > raMin + 0.02 && ra < raMax - 0.02
+                    && Math.abs(dec - Math.toRadians(4)) < Math.toRadians(15)) {
+                assertTrue(Arrays.binarySearch(found, s) >= 0);
+                ++inner;
+            }
+            if (ra < raMin - 0.02 || ra > raMax + 0.02
+                    || Math.abs(dec - Math.toRadians(4)) > Math.toRadians(17))
+                assertTrue(Arrays.binarySearch(found, s) < 0);
+        }
+        assertTrue(inner > 0);
+
+        var reversed = List.of(vertices.get(3), vertices.get(2), vertices.get(1), vertices.get(0));
+        assertArrayEquals(found, index.polygon(reversed));
+    }
+
+    @Test
+    void pixelsInConeCoverConeStars() throws IOException {
+        var catalogue = catalogue();
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < 50; i++) {
+            double ra = randomRa(rng), dec = randomDec(rng);
+            double radius = rng.nextDouble(0.01, 0.5);
+            int order = rng.nextInt(0, 7);
+            int[] pixels = SkyPixelIndex.pixelsInCone(order, ra, dec, radius);
+            assertTrue(pixels.length < SkyPixelIndex.pixelCount(order) || order < 2);
+            for (int s : catalogue.pixelIndex().cone(ra, dec, radius)) {
+                int pixel = SkyPixelIndex.pixelOf(order, catalogue.starRa(s), catalogue.starDec(s));
+                assertTrue(Arrays.binarySearch(pixels, pixel) >= 0);
+            }
+        }
+    }
+
+    @Test
+    void pixelsInConeByDistanceStartWithTheCenterPixel() {
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < 50; i++) {
+            double ra = randomRa(rng), dec = randomDec(rng);
+            double radius = rng.nextDouble(0.1, 1);
+            int order = rng.nextInt(2, 7);
+            int[] byDistance = SkyPixelIndex.pixelsInConeByDistance(order, ra, dec, radius);
+
+            int[] sorted = byDistance.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(SkyPixelIndex.pixelsInCone(order, ra, dec, radius), sorted);
+
+            // Seuls les voisins du pixel du centre peuvent le précéder
+            int center = SkyPixelIndex.pixelOf(order, ra, dec);
+            int rank = 0;
+            while (byDistance[rank] != center)
+                ++rank;
+            assertTrue(rank < 9);
+        }
+    }
+}
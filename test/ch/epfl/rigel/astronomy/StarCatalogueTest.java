@@ -10,10 +10,341 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class StarCatalogueTest {
+    private static StarCatalogue.Builder resourceBuilder() throws IOException {
+        var builder = new StarCatalogue.Builder();
+        try (InputStream s = StarCatalogueTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+            builder.loadFrom(s, HygDatabaseLoader.INSTANCE);
+        }
+        try (InputStream s = StarCatalogueTest.class.getResourceAsStream("/asterisms.txt")) {
+            builder.loadFrom(s, AsterismLoader.INSTANCE);
+        }
+        return builder;
+    }
+
+    private static StarCatalogue resourceCatalogue() throws IOException {
+        return resourceBuilder().build();
+    }
+
+    @Test
+    void starUnitVectorsPointToTheStars() throws IOException {
+        var catalogue = resourceCatalogue();
+        double[] vectors = catalogue.starUnitVectors();
+        assertEquals(3 * catalogue.starCount(), vectors.length);
+        assertSame(vectors, catalogue.starUnitVectors());
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            double x = vectors[3 * i], y = vectors[3 * i + 1], z = vectors[3 * i + 2];
+            assertEquals(1, x * x + y * y + z * z, 1e-12);
+            assertEquals(Math.sin(catalogue.starDec(i)), z, 1e-12);
+            if (Math.abs(z) < 1 - 1e-9)
+                assertEquals(0, Math.sin(Math.atan2(y, x) - catalogue.starRa(i)), 1e-9);
+        }
+    }
+
+    @Test
+    void offHeapCatalogueMatchesHeapCatalogue() throws IOException {
+        // Les deux catalogues partagent les astérismes du même bâtisseur
+        var builder = resourceBuilder();
+        var heap = builder.build();
+        var offHeap = builder.buildOffHeap();
+        assertFalse(heap.isOffHeap());
+        assertTrue(offHeap.isOffHeap());
+
+        assertEquals(heap.starCount(), offHeap.starCount());
+        assertEquals(heap.stars().size(), offHeap.stars().size());
+        for (int i = 0; i < heap.starCount(); i++) {
+            assertEquals(heap.starRa(i), offHeap.starRa(i));
+            assertEquals(heap.starDec(i), offHeap.starDec(i));
+            assertEquals(heap.starMagnitude(i), offHeap.starMagnitude(i));
+            assertEquals(heap.starColorIndex(i), offHeap.starColorIndex(i));
+            assertEquals(heap.starColorTemperature(i), offHeap.starColorTemperature(i));
+            assertEquals(heap.starHipparcosId(i), offHeap.starHipparcosId(i));
+
+            Star expected = heap.stars().get(i), actual = offHeap.stars().get(i);
+            assertEquals(expected.name(), actual.name());
+            assertEquals(expected.name(), heap.starName(i));
+            assertEquals(expected.name(), offHeap.starName(i));
+            assertEquals(expected.hipparcosId(), actual.hipparcosId());
+            assertEquals(expected.equatorialPos().ra(), actual.equatorialPos().ra());
+            assertEquals(expected.equatorialPos().dec(), actual.equatorialPos().dec());
+            assertEquals(expected.magnitude(), actual.magnitude());
+            assertEquals(expected.colorIndex(), actual.colorIndex());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> offHeap.stars().get(offHeap.starCount()));
+        assertThrows(UnsupportedOperationException.class, () -> offHeap.stars().remove(0));
+
+        for (var asterism : heap.asterisms())
+            assertEquals(heap.asterismIndices(asterism), offHeap.asterismIndices(asterism));
+
+        var ordered = offHeap.spatiallyOrdered();
+        assertTrue(ordered.isOffHeap());
+        assertEquals(offHeap.starCount(), ordered.starCount());
+    }
+
+    @Test
+    void heapCatalogueBuildsStarsOnDemand() throws IOException {
+        var builder = resourceBuilder();
+        var catalogue = builder.build();
+        assertEquals(StarCatalogue.Storage.HEAP, catalogue.storage());
+        for (int i = 0; i < catalogue.starCount(); i++) {
+            Star star = catalogue.stars().get(i);
+            assertNotSame(star, catalogue.stars().get(i));
+            assertSameStar(builder.stars().get(i), star);
+            assertEquals(star.name(), catalogue.starName(i));
+        }
+    }
+
+    @Test
+    void compactCatalogueStaysWithinPrecisionBounds() throws IOException {
+        var builder = resourceBuilder();
+        var exact = builder.build();
+        var compact = builder.build(StarCatalogue.Storage.COMPACT);
+        assertEquals(StarCatalogue.Storage.HEAP, exact.storage());
+        assertEquals(StarCatalogue.Storage.COMPACT, compact.storage());
+        assertFalse(compact.isOffHeap());
+
+        for (int i = 0; i < exact.starCount(); i++) {
+            double dRa = Math.abs(exact.starRa(i) - compact.starRa(i));
+            assertTrue(Math.min(dRa, 2 * Math.PI - dRa) <= 7.4e-10);
+            assertEquals(exact.starDec(i), compact.starDec(i), 3.7e-10);
+            assertEquals(exact.starMagnitude(i), compact.starMagnitude(i), 5.1e-4);
+            assertEquals(exact.starColorIndex(i), compact.starColorIndex(i), 4.6e-5);
+            assertEquals(exact.starHipparcosId(i), compact.starHipparcosId(i));
+            assertEquals(exact.stars().get(i).name(), compact.stars().get(i).name());
+            assertEquals(exact.starName(i), compact.starName(i));
+            assertEquals(compact.starMagnitude(i), compact.stars().get(i).magnitude());
+        }
+        for (var asterism : exact.asterisms())
+            assertEquals(exact.asterismIndices(asterism), compact.asterismIndices(asterism));
+        assertEquals(StarCatalogue.Storage.COMPACT, compact.spatiallyOrdered().storage());
+    }
+
+    @Test
+    void brighterStarsFormAMagnitudeSortedPrefix() throws IOException {
+        var catalogue = resourceCatalogue();
+        int count = catalogue.starCount();
+
+        double previous = Double.NEGATIVE_INFINITY;
+        var seen = new BitSet(count);
+        for (int r = 0; r < count; r++) {
+            int s = catalogue.starIndexByMagnitude(r);
+            assertTrue(catalogue.starMagnitude(s) >= previous);
+            previous = catalogue.starMagnitude(s);
+            seen.set(s);
+        }
+        assertEquals(count, seen.cardinality());
+
+        for (double m = -2; m <= 7; m += 0.25) {
+            double limit = m;
+            long expected = IntStream.range(0, count)
+                    .filter(s -> catalogue.starMagnitude(s) <= limit)
+                    .count();
+            var prefix = catalogue.starsBrighterThan(limit);
+            assertTrue(prefix.isReadOnly());
+            assertEquals(expected, catalogue.brighterThanCount(limit));
+            assertEquals(expected, prefix.remaining());
+            while (prefix.hasRemaining())
+                assertTrue(catalogue.starMagnitude(prefix.get()) <= limit);
+        }
+        assertEquals(0, catalogue.starsBrighterThan(Double.NEGATIVE_INFINITY).remaining());
+        assertEquals(count, catalogue.brighterThanCount(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void asterismPrimitiveViewsMatchAsterismStars() throws IOException {
+        var catalogue = resourceCatalogue();
+        var stars = catalogue.stars();
+
+        var expectedSegments = new ArrayList<Long>();
+        for (var asterism : catalogue.asterisms()) {
+            var indices = catalogue.asterismIndices(asterism);
+            var buffer = catalogue.asterismIndexBuffer(asterism);
+            assertTrue(buffer.isReadOnly());
+            assertEquals(asterism.stars().size(), indices.size());
+            assertEquals(asterism.stars().size(), buffer.remaining());
+            for (int j = 0; j < indices.size(); j++) {
+                assertSameStar(asterism.stars().get(j), stars.get(indices.get(j)));
+                assertEquals((int) indices.get(j), buffer.get(j));
+                if (j > 0)
+                    expectedSegments.add((long) indices.get(j - 1) << 32 | indices.get(j));
+            }
+            assertThrows(UnsupportedOperationException.class, () -> indices.set(0, 0));
+        }
+
+        var actualSegments = new ArrayList<Long>();
+        for (int i = 0; i < catalogue.asterismSegmentCount(); i++)
+            actualSegments.add((long) catalogue.asterismSegmentFrom(i) << 32 | catalogue.asterismSegmentTo(i));
+        Collections.sort(expectedSegments);
+        Collections.sort(actualSegments);
+        assertEquals(expectedSegments, actualSegments);
+    }
+
+    @Test
+    void catalogueViewsAreSharedOrderedAndImmutable() throws IOException {
+        var builder = new StarCatalogue.Builder();
+        try (InputStream s = StarCatalogueTest.class.getResourceAsStream("/bound_20.dat")) {
+            builder.loadFrom(s, BoundariesLoader.INSTANCE);
+        }
+        try (InputStream s = StarCatalogueTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+            builder.loadFrom(s, HygDatabaseLoader.INSTANCE);
+        }
+        try (InputStream s = StarCatalogueTest.class.getResourceAsStream("/asterisms.txt")) {
+            builder.loadFrom(s, AsterismLoader.INSTANCE);
+        }
+        var catalogue = builder.build();
+
+        assertSame(catalogue.stars(), catalogue.stars());
+        assertSame(catalogue.asterisms(), catalogue.asterisms());
+        assertSame(catalogue.boundaries(), catalogue.boundaries());
+        assertEquals(builder.asterisms(), new ArrayList<>(catalogue.asterisms()));
+        assertEquals(builder.boundaries(), new ArrayList<>(catalogue.boundaries()));
+
+        var asterism = builder.asterisms().get(0);
+        assertThrows(UnsupportedOperationException.class, () -> catalogue.asterisms().remove(asterism));
+        assertThrows(UnsupportedOperationException.class, () -> catalogue.boundaries().clear());
+        assertThrows(UnsupportedOperationException.class, () -> catalogue.stars().clear());
+    }
+
+    @Test
+    void spatiallyOrderedCatalogueRemapsIndices() throws IOException {
+        var catalogue = resourceCatalogue();
+        var ordered = catalogue.spatiallyOrdered();
+
+        assertEquals(catalogue.starCount(), ordered.starCount());
+        assertEquals(starKeys(catalogue), starKeys(ordered));
+        for (int i = 1; i < ordered.starCount(); i++) {
+            assertTrue(SpatialOrder.mortonKey(ordered.starRa(i - 1), ordered.starDec(i - 1))
+                    <= SpatialOrder.mortonKey(ordered.starRa(i), ordered.starDec(i)));
+        }
+
+        for (int i = 0; i < ordered.starCount(); i++) {
+            var star = ordered.stars().get(i);
+            assertEquals(star.hipparcosId(), ordered.starHipparcosId(i));
+            assertEquals(star.equatorialPos().ra(), ordered.starRa(i));
+            if (star.hipparcosId() != 0)
+                assertSameStar(catalogue.starByHipparcos(star.hipparcosId()).get(),
+                        ordered.starByHipparcos(star.hipparcosId()).get());
+        }
+
+        assertEquals(catalogue.asterisms(), ordered.asterisms());
+        for (var asterism : ordered.asterisms()) {
+            var indices = ordered.asterismIndices(asterism);
+            for (int j = 0; j < indices.size(); j++)
+                assertSameStar(asterism.stars().get(j), ordered.stars().get(indices.get(j)));
+        }
+
+        assertTrue(meanStep(ordered) < meanStep(catalogue) / 3);
+    }
+
+    private static void assertSameStar(Star expected, Star actual) {
+        assertEquals(expected.hipparcosId(), actual.hipparcosId());
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.equatorialPos().ra(), actual.equatorialPos().ra());
+        assertEquals(expected.equatorialPos().dec(), actual.equatorialPos().dec());
+        assertEquals(expected.magnitude(), actual.magnitude());
+        assertEquals(expected.colorIndex(), actual.colorIndex());
+    }
+
+    private static List<String> starKeys(StarCatalogue catalogue) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < catalogue.starCount(); i++)
+            keys.add(catalogue.starHipparcosId(i) + " " + catalogue.starName(i) + " "
+                    + catalogue.starRa(i) + " " + catalogue.starDec(i));
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static double meanStep(StarCatalogue catalogue) {
+        double sum = 0;
+        for (int i = 1; i < catalogue.starCount(); i++) {
+            double dx = Math.cos(catalogue.starDec(i)) * Math.cos(catalogue.starRa(i))
+                    - Math.cos(catalogue.starDec(i - 1)) * Math.cos(catalogue.starRa(i - 1));
+            double dy = Math.cos(catalogue.starDec(i)) * Math.sin(catalogue.starRa(i))
+                    - Math.cos(catalogue.starDec(i - 1)) * Math.sin(catalogue.starRa(i - 1));
+            double dz = Math.sin(catalogue.starDec(i)) - Math.sin(catalogue.starDec(i - 1));
+            sum += Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return sum / (catalogue.starCount() - 1);
+    }
+
+    @Test
+    void asterismViewsFailForUnknownAsterism() throws IOException {
+        var catalogue = resourceCatalogue();
+        var other = new Asterism(List.of(catalogue.stars().get(0)));
+        assertThrows(IllegalArgumentException.class, () -> catalogue.asterismIndices(other));
+        assertThrows(IllegalArgumentException.class, () -> catalogue.asterismIndexBuffer(other));
+    }
+
+    /**
+     * Liste d'étoiles qui compte les accès à ses éléments ; les parcours et
+     * les recherches (indexOf, contains) d'AbstractList passent tous par get
+     */
+    private static final class CountingList extends AbstractList<Star> implements RandomAccess {
+        private final List<Star> stars;
+        private long accesses;
+
+        private CountingList(List<Star> stars) {
+            this.stars = stars;
+        }
+
+        @Override
+        public Star get(int index) {
+            accesses++;
+            return stars.get(index);
+        }
+
+        @Override
+        public int size() {
+            return stars.size();
+        }
+    }
+
+    /**
+     * Nombre d'accès aux étoiles lors de la construction d'un catalogue de
+     * count étoiles tirées au hasard, avec un astérisme de huit étoiles pour
+     * cent étoiles
+     */
+    private static long constructionAccesses(SplittableRandom rng, int count) {
+        var stars = new ArrayList<Star>(count);
+        for (int i = 0; i < count; i++) {
+            stars.add(new Star(i + 1, "S" + i,
+                    EquatorialCoordinates.of(rng.nextDouble(0, 2 * Math.PI), rng.nextDouble(-1.5, 1.5)),
+                    (float) rng.nextDouble(-1, 12), (float) rng.nextDouble(-0.5, 5.5)));
+        }
+        var asterisms = new ArrayList<Asterism>();
+        for (int a = 0; a < count / 100; a++) {
+            var members = new ArrayList<Star>(8);
+            for (int m = 0; m < 8; m++)
+                members.add(stars.get(rng.nextInt(count)));
+            asterisms.add(new Asterism(members));
+        }
+
+        var counting = new CountingList(stars);
+        var catalogue = new StarCatalogue(counting, asterisms, List.of());
+        long accesses = counting.accesses;
+        for (var asterism : asterisms) {
+            var indices = catalogue.asterismIndices(asterism);
+            for (int j = 0; j < indices.size(); j++)
+                assertSame(asterism.stars().get(j), stars.get(indices.get(j)));
+        }
+        return accesses;
+    }
+
+    @Test
+    void constructionReadsEachStarAConstantNumberOfTimes() {
+        var rng = TestRandomizer.newRandom();
+        // Une recherche linéaire par étoile d'astérisme lirait, en moyenne,
+        // la moitié des étoiles pour chacune des 0,08·count étoiles
+        for (int count : new int[]{4_000, 64_000}) {
+            long accesses = constructionAccesses(rng, count);
+            assertTrue(accesses <= 3L * count, accesses + " accès pour " + count + " étoiles");
+        }
+    }
+
     /*private static String randomStarName(SplittableRandom rng) {
         var vowels = "aeiouy";
         var consonants = "bcdfghjklmnpqrstvwxz";
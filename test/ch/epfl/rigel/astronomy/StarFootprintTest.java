@@ -0,0 +1,104 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StarFootprintTest {
+    private static final int COPIES = 20;
+
+    private static StarCatalogue.Builder hygBuilder() throws IOException {
+        try (InputStream s = StarFootprintTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+            return new StarCatalogue.Builder().loadFrom(s, HygDatabaseLoader.INSTANCE);
+        }
+    }
+
+    @Test
+    void codedNamesTakeLessMemoryThanStoredNames() throws IOException {
+        List<Star> stars = hygBuilder().stars();
+        long coded = footprint(stars, false);
+        long named = footprint(stars, true);
+        assertTrue(coded < 0.75 * named, coded + " octets contre " + named);
+    }
+
+    @Test
+    void catalogueStoragesTakeLessHeapThanStars() throws IOException {
+        StarCatalogue.Builder builder = hygBuilder();
+        long stars = footprint(builder.stars());
+        long heap = footprint(builder, StarCatalogue.Storage.HEAP);
+        assertTrue(heap < 0.75 * stars, "HEAP : " + heap + " octets contre " + stars);
+
+        // Les colonnes occupent 24 octets par étoile dans le tas, aucun hors
+        // du tas et 12 une fois quantifiées ; les autres tableaux parallèles
+        // sont communs aux trois stockages
+        long columns = (long) builder.stars().size() * COPIES * (2 * Double.BYTES + 2 * Float.BYTES);
+        long offHeap = footprint(builder, StarCatalogue.Storage.OFF_HEAP);
+        long compact = footprint(builder, StarCatalogue.Storage.COMPACT);
+        assertTrue(heap - offHeap > 0.9 * columns, "OFF_HEAP : " + offHeap + " octets contre " + heap);
+        assertTrue(heap - compact > 0.9 * columns / 2, "COMPACT : " + compact + " octets contre " + heap);
+    }
+
+    private static long footprint(StarCatalogue.Builder builder, StarCatalogue.Storage storage) {
+        List<StarCatalogue> catalogues = new ArrayList<>(COPIES);
+        long before = usedMemory();
+        for (int c = 0; c < COPIES; c++)
+            catalogues.add(builder.build(storage));
+        long used = usedMemory() - before;
+        if (catalogues.isEmpty())
+            throw new AssertionError();
+        return used;
+    }
+
+    /**
+     * Empreinte de copies des étoiles données, chacune avec sa propre
+     * position, comme celles que produisent les chargeurs
+     */
+    private static long footprint(List<Star> stars) {
+        List<Star> copies = new ArrayList<>(stars.size() * COPIES);
+        long before = usedMemory();
+        for (int c = 0; c < COPIES; c++) {
+            for (Star star : stars) {
+                EquatorialCoordinates pos = EquatorialCoordinates.of(
+                        star.equatorialPos().ra(), star.equatorialPos().dec());
+                copies.add(new Star(star.hipparcosId(), star.name(), pos,
+                        (float) star.magnitude(), (float) star.colorIndex()));
+            }
+        }
+        long used = usedMemory() - before;
+        if (copies.isEmpty())
+            throw new AssertionError();
+        return used;
+    }
+
+    private static long footprint(List<Star> stars, boolean eagerNames) {
+        List<Star> copies = new ArrayList<>(stars.size() * COPIES);
+        long before = usedMemory();
+        for (int c = 0; c < COPIES; c++) {
+            for (Star star : stars) {
+                int code = star.nameCode();
+                copies.add(code < 0 || eagerNames
+                        ? new Star(star.hipparcosId(), star.name(), star.equatorialPos(),
+                        (float) star.magnitude(), (float) star.colorIndex())
+                        : new Star(star.hipparcosId(), StarNames.bayer(code), StarNames.constellation(code),
+                        star.equatorialPos(), (float) star.magnitude(), (float) star.colorIndex()));
+            }
+        }
+        long used = usedMemory() - before;
+        if (copies.isEmpty())
+            throw new AssertionError();
+        return used;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
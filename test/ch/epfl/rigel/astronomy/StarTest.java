@@ -4,10 +4,16 @@ import ch.epfl.rigel.coordinates.EquatorialCoordinates;
 import ch.epfl.test.TestRandomizer;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class StarTest {
     @Test
@@ -66,6 +72,26 @@ public class StarTest {
         }
     }
 
+    @Test
+    void bayerNamesCreatedConcurrentlyAreReadBack() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<Void>> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String prefix = "t" + t + "-";
+                threads.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        var s = new Star(1, prefix + i, "Ori", EquatorialCoordinates.of(0, 0), 0, 0);
+                        assertEquals(prefix + i + " Ori", s.name());
+                    }
+                }, executor));
+            }
+            threads.forEach(CompletableFuture::join);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void starAngularSizeIs0() {
         var s = new Star(1, "Rigel", EquatorialCoordinates.of(1, 1), 2, 3);
@@ -136,4 +162,27 @@ public class StarTest {
         assertEquals(1924, s4.colorTemperature());
         assertEquals(1490, s5.colorTemperature());
     }
+
+    @Test
+    void bayerNamedStarsShareTheirNameParts() {
+        EquatorialCoordinates eqPos = EquatorialCoordinates.of(0, 0);
+        var s1 = new Star(1, "Alp", "Ori", eqPos, 0, 0);
+        var s2 = new Star(2, new String("Alp"), new String("Ori"), eqPos, 0, 0);
+        var s3 = new Star(3, "?", "Ori", eqPos, 0, 0);
+
+        assertEquals("Alp Ori", s1.name());
+        assertEquals("Alp Ori", s1.info());
+        assertEquals("? Ori", s3.name());
+        assertEquals(s1.nameCode(), s2.nameCode());
+        assertTrue(s1.nameCode() >= 0);
+        assertTrue(newStarWithColorIndex(0).nameCode() < 0);
+    }
+
+    @Test
+    void bayerNamedStarFailsWhenNamePartIsNull() {
+        EquatorialCoordinates eqPos = EquatorialCoordinates.of(0, 0);
+        assertThrows(NullPointerException.class, () -> {
+            new Star(1, null, "Ori", eqPos, 0, 0);
+        });
+    }
 }
@@ -0,0 +1,166 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.coordinates.EquatorialToHorizontalConversion;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TiledCatalogueTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<Star> resourceStars() throws IOException {
+        try (InputStream s = TiledCatalogueTest.class.getResourceAsStream("/hygdata_v3.csv")) {
+            return new StarCatalogue.Builder().loadFrom(s, HygDatabaseLoader.INSTANCE).stars();
+        }
+    }
+
+    private Path tiledFile(List<Star> stars) throws IOException {
+        Path path = directory.resolve("stars.tiles");
+        TiledCatalogueWriter.write(stars, path, 2, 4);
+        return path;
+    }
+
+    private static double distance(EquatorialCoordinates a, EquatorialCoordinates b) {
+        double cos = Math.sin(a.dec()) * Math.sin(b.dec())
+                + Math.cos(a.dec()) * Math.cos(b.dec()) * Math.cos(a.ra() - b.ra());
+        return Math.acos(Math.max(-1, Math.min(1, cos)));
+    }
+
+    private static Set<Integer> hipparcosIds(StarCatalogue catalogue) {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < catalogue.starCount(); i++)
+            ids.add(catalogue.starHipparcosId(i));
+        return ids;
+    }
+
+    @Test
+    void selectionContainsAllStarsOfTheConeBelowTheLimit() throws IOException {
+        var stars = resourceStars();
+        try (var tiled = TiledCatalogue.open(tiledFile(stars), Long.MAX_VALUE)) {
+            assertEquals(3, tiled.levelCount());
+            assertEquals(4, tiled.levelMagnitude(1));
+            assertEquals(Double.POSITIVE_INFINITY, tiled.levelMagnitude(2));
+            assertEquals(stars.size(), tiled.starCount());
+
+            var rng = TestRandomizer.newRandom();
+            for (int i = 0; i < 20; i++) {
+                var center = EquatorialCoordinates.of(rng.nextDouble(0, 2 * Math.PI),
+                        Math.asin(rng.nextDouble(-1, 1)));
+                double radius = rng.nextDouble(0.05, 1);
+                double limit = rng.nextDouble(1, 7);
+
+                var selection = tiled.select(center, radius, limit);
+                var ids = hipparcosIds(selection);
+                for (int s = 0; s < selection.starCount(); s++)
+                    assertTrue(selection.starMagnitude(s) <= limit);
+                for (Star star : stars) {
+                    if (star.magnitude() <= limit && distance(center, star.equatorialPos()) <= radius)
+                        assertTrue(ids.contains(star.hipparcosId()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void selectionFollowsTheProjectionCenter() throws IOException {
+        var stars = resourceStars();
+        var when = ZonedDateTime.of(LocalDate.of(2020, Month.APRIL, 4), LocalTime.of(0, 0), ZoneOffset.UTC);
+        var where = GeographicCoordinates.ofDeg(6.57, 46.52);
+        var betelgeuse = stars.stream().filter(s -> s.name().equals("Betelgeuse")).findFirst().orElseThrow();
+        var projection = new StereographicProjection(
+                new EquatorialToHorizontalConversion(when, where).apply(betelgeuse.equatorialPos()));
+
+        try (var tiled = TiledCatalogue.open(tiledFile(stars), Long.MAX_VALUE)) {
+            var selection = tiled.select(when, where, projection, Math.toRadians(5), 6);
+            assertTrue(hipparcosIds(selection).contains(betelgeuse.hipparcosId()));
+            assertTrue(selection.starCount() < stars.size() / 4);
+        }
+    }
+
+    @Test
+    void cacheStaysWithinTheMemoryBudget() throws IOException {
+        var stars = resourceStars();
+        long budget = 16 * 1024;
+        try (var tiled = TiledCatalogue.open(tiledFile(stars), budget)) {
+            var rng = TestRandomizer.newRandom();
+            for (int i = 0; i < 50; i++) {
+                var center = EquatorialCoordinates.of(rng.nextDouble(0, 2 * Math.PI),
+                        Math.asin(rng.nextDouble(-1, 1)));
+                tiled.select(center, 1, 7);
+                assertTrue(tiled.cachedBytes() <= tiled.usedBytes());
+                assertTrue(tiled.usedBytes() <= budget);
+            }
+
+            // Le budget tronque d'abord les niveaux les plus faibles
+            var center = EquatorialCoordinates.of(0, 0);
+            var selection = tiled.select(center, Math.PI, 7);
+            assertTrue(selection.starCount() < stars.size());
+            for (Star star : stars) {
+                if (star.magnitude() <= 2)
+                    assertTrue(hipparcosIds(selection).contains(star.hipparcosId()));
+            }
+        }
+    }
+
+    @Test
+    void budgetKeepsTheTilesClosestToTheCenter() throws IOException {
+        var stars = resourceStars();
+        var bright = stars.stream().filter(s -> s.magnitude() <= 2).toList();
+        try (var tiled = TiledCatalogue.open(tiledFile(stars), 4 * 1024)) {
+            for (Star star : bright) {
+                // Cône couvrant tout le ciel, centré sur l'étoile : le budget
+                // ne retient que les tuiles les plus proches, dont la sienne
+                var selection = tiled.select(star.equatorialPos(), Math.PI, 2);
+                assertTrue(selection.starCount() < bright.size());
+                assertTrue(hipparcosIds(selection).contains(star.hipparcosId()));
+            }
+        }
+    }
+
+    @Test
+    void streamedCatalogueIsWrittenLikeTheLoadedOne() throws IOException {
+        Path loaded = tiledFile(resourceStars());
+        Path streamed = directory.resolve("streamed.tiles");
+        TiledCatalogueWriter.write(() -> TiledCatalogueTest.class.getResourceAsStream("/hygdata_v3.csv"),
+                streamed, 2, 4);
+        assertArrayEquals(Files.readAllBytes(loaded), Files.readAllBytes(streamed));
+    }
+
+    @Test
+    void unchangedSelectionIsReused() throws IOException {
+        try (var tiled = TiledCatalogue.open(tiledFile(resourceStars()), Long.MAX_VALUE)) {
+            var center = EquatorialCoordinates.of(1, 0.5);
+            var first = tiled.select(center, 0.3, 5);
+            assertSame(first, tiled.select(center, 0.3, 5));
+            assertNotSame(first, tiled.select(center, 0.3, 4));
+        }
+    }
+
+    @Test
+    void openFailsOnInvalidFiles() throws IOException {
+        Path path = directory.resolve("invalid.tiles");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThrows(IOException.class, () -> TiledCatalogue.open(path, 1));
+        assertThrows(IllegalArgumentException.class, () -> TiledCatalogue.open(path, 0));
+    }
+}
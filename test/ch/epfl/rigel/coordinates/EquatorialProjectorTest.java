@@ -0,0 +1,60 @@
+package ch.epfl.rigel.coordinates;
+
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EquatorialProjectorTest {
+
+    @Test
+    void projectMatchesConversionFollowedByProjection() {
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < TestRandomizer.RANDOM_ITERATIONS; i++) {
+            var when = ZonedDateTime.ofInstant(
+                    Instant.ofEpochSecond(rng.nextLong(0, 4_000_000_000L)), ZoneOffset.UTC);
+            var where = GeographicCoordinates.ofDeg(rng.nextDouble(-180, 180),
+                    rng.nextDouble(-90, 90));
+            var center = HorizontalCoordinates.of(rng.nextDouble(0, 2 * Math.PI),
+                    rng.nextDouble(-Math.PI / 2, Math.PI / 2));
+            var conversion = new EquatorialToHorizontalConversion(when, where);
+            var projection = new StereographicProjection(center);
+            var projector = new EquatorialProjector(conversion, projection);
+
+            double ra = rng.nextDouble(0, 2 * Math.PI);
+            double dec = rng.nextDouble(-Math.PI / 2, Math.PI / 2);
+            var expected = projection.apply(conversion.apply(ra, dec));
+            if (Math.hypot(expected.x(), expected.y()) > 100)
+                continue;
+
+            double[] output = new double[3];
+            projector.project(ra, dec, output, 1);
+            assertEquals(expected.x(), output[1], 1e-10);
+            assertEquals(expected.y(), output[2], 1e-10);
+        }
+    }
+
+    @Test
+    void projectUnitMatchesProjectOnTheUnitVector() {
+        var rng = TestRandomizer.newRandom();
+        var when = ZonedDateTime.of(2020, 4, 4, 0, 0, 0, 0, ZoneOffset.UTC);
+        var conversion = new EquatorialToHorizontalConversion(when,
+                GeographicCoordinates.ofDeg(-71.5, -33));
+        var projector = new EquatorialProjector(conversion,
+                new StereographicProjection(HorizontalCoordinates.ofDeg(300, 10)));
+        for (int i = 0; i < TestRandomizer.RANDOM_ITERATIONS; i++) {
+            double ra = rng.nextDouble(0, 2 * Math.PI);
+            double dec = rng.nextDouble(-Math.PI / 2, Math.PI / 2);
+            double[] expected = new double[2];
+            double[] actual = new double[2];
+            projector.project(ra, dec, expected, 0);
+            projector.projectUnit(Math.cos(dec) * Math.cos(ra), Math.cos(dec) * Math.sin(ra),
+                    Math.sin(dec), actual, 0);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+}